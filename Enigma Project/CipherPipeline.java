@@ -0,0 +1,208 @@
+/*
+ * File: CipherPipeline.java
+ * -------------------------
+ * This file is a class for chaining letter-substitution stages: keys,
+ * inverted keys and Caesar shifts. Every stage is just a rearrangement of
+ * the 26 letters, and following one rearrangement with another is itself
+ * a rearrangement, so each stage is folded into a single 26-entry table
+ * as the pipeline is built. However many stages there are, encrypting
+ * costs one table lookup per character and never makes an intermediate
+ * string. Pipelines never change; adding a stage returns a new one.
+ *
+ * For example,
+ *
+ *    CipherPipeline.start().then(key1).thenInverse(key2).thenShift(3)
+ *
+ * encrypts with key1, then decrypts with key2, then shifts each letter
+ * three places along the alphabet.
+ */
+
+public class CipherPipeline {
+
+	/**
+	 * Returns the empty pipeline, which leaves every letter as it is.
+	 *
+	 * @return The empty pipeline
+	 */
+
+	public static CipherPipeline start() {
+		byte[] identity = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			identity[i] = (byte) i;
+		}
+		return new CipherPipeline(identity, "");
+	}
+
+	/**
+	 * Returns a pipeline that does everything this one does and then
+	 * encrypts with a key.
+	 *
+	 * @param key The key to encrypt with
+	 * @return The longer pipeline
+	 */
+
+	public CipherPipeline then(SubstitutionKey key) {
+		return compose(key.forward, "key " + key);
+	}
+
+	/**
+	 * Returns a pipeline that does everything this one does and then
+	 * decrypts with a key, which is the same as encrypting with the
+	 * inverted key.
+	 *
+	 * @param key The key to decrypt with
+	 * @return The longer pipeline
+	 */
+
+	public CipherPipeline thenInverse(SubstitutionKey key) {
+		return compose(key.inverse, "inverse of " + key);
+	}
+
+	/**
+	 * Returns a pipeline that does everything this one does and then moves
+	 * each letter a number of places along the alphabet, wrapping from Z
+	 * back to A.  Negative shifts move backward.
+	 *
+	 * @param shift The number of places to move each letter
+	 * @return The longer pipeline
+	 */
+
+	public CipherPipeline thenShift(int shift) {
+		shift = ((shift % 26) + 26) % 26;
+		byte[] stage = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			stage[i] = (byte)((i + shift) % 26);
+		}
+		return compose(stage, "shift " + shift);
+	}
+
+	/**
+	 * Returns a pipeline that does everything this one does and then
+	 * everything another one does.
+	 *
+	 * @param next The pipeline to run afterward
+	 * @return The longer pipeline
+	 */
+
+	public CipherPipeline then(CipherPipeline next) {
+		if (next.description.length() == 0) return this;
+		return compose(next.table, next.description);
+	}
+
+	/**
+	 * Returns the pipeline that undoes this one.
+	 *
+	 * @return The inverse pipeline
+	 */
+
+	public CipherPipeline inverse() {
+		byte[] inverse = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			inverse[table[i]] = (byte) i;
+		}
+		return new CipherPipeline(inverse, description.length() == 0 ? "" : "inverse of (" + description + ")");
+	}
+
+	/**
+	 * Returns the single key that does the same thing as the whole
+	 * pipeline.
+	 *
+	 * @return The combined key
+	 */
+
+	public SubstitutionKey toKey() {
+		char[] key = new char[26];
+		for (int i = 0; i < 26; i++) {
+			key[i] = (char)('A' + table[i]);
+		}
+		return new SubstitutionKey(new String(key));
+	}
+
+	/**
+	 * Encrypts a string with the whole pipeline.  Letters come out in
+	 * uppercase, and anything else is copied to the output in uppercase,
+	 * as LetterSubstitutionCipher does.
+	 *
+	 * @param str The string to encrypt
+	 * @return The encrypted string
+	 */
+
+	public String encrypt(String str) {
+		char[] result = str.toCharArray();
+		for (int i = 0; i < result.length; i++) {
+			char ch = result[i];
+			int letter = (ch | 0x20) - 'a';
+			if (letter >= 0 && letter < 26) {
+				result[i] = (char)('A' + table[letter]);
+			} else result[i] = Character.toUpperCase(ch);
+		}
+		return new String(result);
+	}
+
+	/**
+	 * Encrypts a range of ASCII bytes in place with the whole pipeline.
+	 * Letters come out in uppercase and every other byte is left alone.
+	 *
+	 * @param text The array holding the bytes
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes to encrypt
+	 */
+
+	public void encrypt(byte[] text, int offset, int length) {
+		byte[] bytes = byteTable;
+		for (int i = offset; i < offset + length; i++) {
+			text[i] = bytes[text[i] & 0xFF];
+		}
+	}
+
+	/**
+	 * Describes the stages of the pipeline in order.
+	 *
+	 * @return The description
+	 */
+
+	public String toString() {
+		return description.length() == 0 ? "(empty pipeline)" : description;
+	}
+
+	/* Private methods */
+
+	/*Constructor*/
+	/*
+	 * makes a pipeline from its combined table and description, and works
+	 * out the 256-entry table used for bytes
+	 */
+	private CipherPipeline(byte[] table, String description) {
+		this.table = table;
+		this.description = description;
+		byteTable = new byte[256];
+		for (int i = 0; i < 256; i++) {
+			byteTable[i] = (byte) i;
+		}
+		for (int i = 0; i < 26; i++) {
+			byteTable['A' + i] = (byte)('A' + table[i]);
+			byteTable['a' + i] = (byte)('A' + table[i]);
+		}
+	}
+
+	/*Method: compose()*/
+	/*
+	 * returns the pipeline that runs this one and then one more stage,
+	 * by sending each entry of this pipeline's table through the stage
+	 */
+	private CipherPipeline compose(byte[] stage, String stageDescription) {
+		byte[] combined = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			combined[i] = stage[table[i]];
+		}
+		String combinedDescription = description.length() == 0
+				? stageDescription : description + ", then " + stageDescription;
+		return new CipherPipeline(combined, combinedDescription);
+	}
+
+	/* Private instance variables */
+	private byte[] table; //what each letter becomes after every stage
+	private byte[] byteTable; //the same for every byte value, for ASCII text
+	private String description; //the stages, for toString()
+
+}
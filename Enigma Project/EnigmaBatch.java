@@ -0,0 +1,214 @@
+/*
+ * File: EnigmaBatch.java
+ * ----------------------
+ * This file is a class that encrypts large numbers of short messages,
+ * each with its own rotor order and rotor setting, on a fixed pool of
+ * threads. Messages are taken in blocks, and inside a block they are
+ * grouped by rotor order so each group needs only one EnigmaMachine and
+ * one EnigmaModel, which just has its setting changed between messages.
+ * Results always come back in the same order the messages went in, and
+ * only a limited number of blocks are ever in flight, so a producer that
+ * is faster than the pool is held back instead of filling up memory.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+public class EnigmaBatch {
+
+	/**
+	 * Creates a new batch encryptor with one thread per core.
+	 */
+
+	public EnigmaBatch() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new batch encryptor with the given number of threads.  At
+	 * most twice that many blocks of messages are in flight at once.
+	 *
+	 * @param threads The number of threads to encrypt on
+	 */
+
+	public EnigmaBatch(int threads) {
+		executor = Executors.newFixedThreadPool(threads);
+		maxPendingBlocks = threads * 2;
+	}
+
+	/**
+	 * Encrypts every job in a list and returns the ciphertexts in the same
+	 * order as the jobs.
+	 *
+	 * @param jobs The messages to encrypt
+	 * @return The ciphertext for each job
+	 */
+
+	public List<String> encryptAll(List<Job> jobs) {
+		List<String> results = new ArrayList<String>(jobs.size());
+		encryptAll(jobs.iterator(), results::add);
+		return results;
+	}
+
+	/**
+	 * Encrypts every job in a stream, passing the ciphertexts to the
+	 * consumer in the same order as the jobs.  Jobs are only pulled from
+	 * the stream when there is room for another block, so the stream can
+	 * be far larger than memory.  The consumer is always called from the
+	 * thread that called this method.
+	 *
+	 * @param jobs The messages to encrypt
+	 * @param results Receives the ciphertext for each job in order
+	 */
+
+	public void encryptAll(Stream<Job> jobs, Consumer<String> results) {
+		encryptAll(jobs.iterator(), results);
+	}
+
+	/**
+	 * Encrypts every job an iterator returns, passing the ciphertexts to
+	 * the consumer in the same order as the jobs.
+	 *
+	 * @param jobs The messages to encrypt
+	 * @param results Receives the ciphertext for each job in order
+	 */
+
+	public void encryptAll(Iterator<Job> jobs, Consumer<String> results) {
+		ArrayDeque<Future<String[]>> pending = new ArrayDeque<Future<String[]>>();
+		while (jobs.hasNext()) {
+			List<Job> block = new ArrayList<Job>(BLOCK_SIZE);
+			while (block.size() < BLOCK_SIZE && jobs.hasNext()) {
+				block.add(jobs.next());
+			}
+			if (pending.size() == maxPendingBlocks) {
+				deliver(pending.removeFirst(), results);
+			}
+			pending.addLast(executor.submit(new EncryptBlock(block)));
+		}
+		while (!pending.isEmpty()) {
+			deliver(pending.removeFirst(), results);
+		}
+	}
+
+	/**
+	 * Stops the threads once all the work handed to them is done.
+	 */
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * One message to encrypt, with its own rotor order and rotor setting.
+	 */
+
+	public static class Job {
+
+		/**
+		 * Creates a new job, checking the rotor order and setting straight
+		 * away so a bad job is found before any encryption starts.
+		 *
+		 * @param rotorOrder A three-digit integer specifying the rotor order
+		 * @param rotorSetting The starting rotor setting
+		 * @param text The message to encrypt
+		 * @throws IllegalArgumentException If the order or setting is illegal
+		 */
+
+		public Job(int rotorOrder, String rotorSetting, String text) {
+			if (!EnigmaMachine.rotorOrderIsLegal(rotorOrder)) {
+				throw new IllegalArgumentException("illegal rotor order: " + rotorOrder);
+			}
+			if (!EnigmaMachine.rotorSettingIsLegal(rotorSetting)) {
+				throw new IllegalArgumentException("illegal rotor setting: " + rotorSetting);
+			}
+			this.rotorOrder = rotorOrder;
+			this.rotorSetting = rotorSetting;
+			this.text = text;
+		}
+
+		public int getRotorOrder() {
+			return rotorOrder;
+		}
+
+		public String getRotorSetting() {
+			return rotorSetting;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		private int rotorOrder; //the rotor order for this message
+		private String rotorSetting; //the starting rotor setting for this message
+		private String text; //the message to encrypt
+	}
+
+	/* Private methods */
+
+	/*Method: deliver()*/
+	/*
+	 * waits for a block to finish and hands its results to the consumer,
+	 * passing on anything that went wrong in the block
+	 */
+	private void deliver(Future<String[]> block, Consumer<String> results) {
+		String[] ciphertexts;
+		try {
+			ciphertexts = block.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while encrypting", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("encryption failed", e.getCause());
+		}
+		for (int i = 0; i < ciphertexts.length; i++) {
+			results.accept(ciphertexts[i]);
+		}
+	}
+
+	/*
+	 * Encrypts one block of jobs. The jobs are sorted by rotor order with
+	 * their place in the block packed into the low bits, so each run of
+	 * the same rotor order can share one model and every result still
+	 * goes back into its own slot.
+	 */
+	private static class EncryptBlock implements Callable<String[]> {
+
+		public EncryptBlock(List<Job> jobs) {
+			this.jobs = jobs;
+		}
+
+		public String[] call() {
+			int count = jobs.size();
+			long[] keys = new long[count];
+			for (int i = 0; i < count; i++) {
+				keys[i] = ((long) jobs.get(i).getRotorOrder() << 32) | i;
+			}
+			Arrays.sort(keys);
+			String[] results = new String[count];
+			EnigmaModel model = null;
+			for (int i = 0; i < count; i++) {
+				Job job = jobs.get((int) keys[i]);
+				if (model == null || model.getMachine().getRotorOrder() != job.getRotorOrder()) {
+					model = new EnigmaMachine(job.getRotorOrder(), "AAA", "").newModel();
+				}
+				model.setRotorSetting(job.getRotorSetting());
+				results[(int) keys[i]] = model.encrypt(job.getText());
+			}
+			return results;
+		}
+
+		private List<Job> jobs; //the jobs in this block, in input order
+	}
+
+	/* Private instance variables */
+	private ExecutorService executor; //the threads doing the encryption
+	private int maxPendingBlocks; //the most blocks allowed in flight at once
+
+	/* Private constants */
+
+	/* The number of jobs handed to a thread at a time */
+	private static final int BLOCK_SIZE = 1024;
+
+}
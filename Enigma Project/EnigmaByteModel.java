@@ -0,0 +1,240 @@
+/*
+ * File: EnigmaByteModel.java
+ * --------------------------
+ * This file is a version of EnigmaModel that works on arbitrary bytes
+ * instead of the letters A to Z, as a toy stream transform for binary
+ * data. It has three rotors that each wire the 256 byte values to each
+ * other and step like an odometer, and a reflector that swaps the byte
+ * values in pairs, so no byte ever encrypts to itself and running the
+ * output back through a model at the same starting position gives back
+ * the input, just like the real machine. The wiring is generated from a
+ * seed, so two models made with the same seed are the same machine.
+ *
+ * Bytes are processed in runs that go up to the next turn of the medium
+ * rotor. Within a run only the fast rotor moves, so the medium rotor,
+ * slow rotor and reflector are looked up together in one 256-entry table
+ * that is rebuilt once per run. Each byte is then three lookups in
+ * 256-entry tables that stay in the first-level cache, with the fast rotor's
+ * position added and taken away by masking with 0xFF, and no tests or
+ * branches at all.
+ */
+
+import java.nio.*;
+import java.util.*;
+
+public class EnigmaByteModel {
+
+	/**
+	 * Creates a model with the wiring generated from a seed, with all
+	 * rotors at position 0.
+	 *
+	 * @param wiringSeed The seed the rotor and reflector wiring is made from
+	 */
+
+	public EnigmaByteModel(long wiringSeed) {
+		Random random = new Random(wiringSeed);
+		fastWiring = shuffledBytes(random);
+		mediumWiring = shuffledBytes(random);
+		slowWiring = shuffledBytes(random);
+		fastInverse = inverseOf(fastWiring);
+		mediumInverse = inverseOf(mediumWiring);
+		slowInverse = inverseOf(slowWiring);
+		reflector = new byte[SYMBOLS];
+		byte[] pairs = shuffledBytes(random);
+		for (int i = 0; i < SYMBOLS; i += 2) {
+			reflector[pairs[i] & 0xFF] = pairs[i + 1];
+			reflector[pairs[i + 1] & 0xFF] = pairs[i];
+		}
+		middleTable = new byte[SYMBOLS];
+		slowTable = new byte[SYMBOLS];
+		slowTablePos = -1;
+		buildMiddleTable();
+	}
+
+	/**
+	 * Encrypts the bytes between a buffer's position and its limit in
+	 * place.  Heap and direct buffers both work.  The buffer's position
+	 * and limit are left where they were, so it can be written straight
+	 * out afterwards.
+	 *
+	 * @param buffer The bytes to encrypt
+	 */
+
+	public void encrypt(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			encrypt(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			return;
+		}
+		int index = buffer.position();
+		int limit = buffer.limit();
+		while (index < limit) {
+			int run = startRun(limit - index);
+			int pos = fastPos + 1;
+			for (int end = index + run; index < end; index++, pos++) {
+				int b = (fastWiring[(buffer.get(index) + pos) & 0xFF] - pos) & 0xFF;
+				b = (middleTable[b] + pos) & 0xFF;
+				buffer.put(index, (byte)(fastInverse[b] - pos));
+			}
+			fastPos += run;
+		}
+	}
+
+	/**
+	 * Encrypts a range of an array of bytes in place.
+	 *
+	 * @param data The array holding the bytes
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes to encrypt
+	 */
+
+	public void encrypt(byte[] data, int offset, int length) {
+		int index = offset;
+		int limit = offset + length;
+		byte[] fastWiring = this.fastWiring;
+		byte[] fastInverse = this.fastInverse;
+		byte[] middleTable = this.middleTable;
+		while (index < limit) {
+			int run = startRun(limit - index);
+			int pos = fastPos + 1;
+			for (int end = index + run; index < end; index++, pos++) {
+				int b = (fastWiring[(data[index] + pos) & 0xFF] - pos) & 0xFF;
+				b = (middleTable[b] + pos) & 0xFF;
+				data[index] = (byte)(fastInverse[b] - pos);
+			}
+			fastPos += run;
+		}
+	}
+
+	/**
+	 * Gets the rotor position as one number: the slow rotor times 65,536,
+	 * plus the medium rotor times 256, plus the fast rotor.
+	 *
+	 * @return The rotor position
+	 */
+
+	public int getRotorPosition() {
+		return (slowPos << 16) | (medPos << 8) | fastPos;
+	}
+
+	/**
+	 * Sets the rotor position to a number from getRotorPosition().
+	 *
+	 * @param position The rotor position, from 0 to 16,777,215
+	 * @throws IllegalArgumentException If the position is out of range
+	 */
+
+	public void setRotorPosition(int position) {
+		if (position < 0 || position >= PERIOD) {
+			throw new IllegalArgumentException("rotor position out of range: " + position);
+		}
+		slowPos = position >>> 16;
+		medPos = (position >>> 8) & 0xFF;
+		fastPos = position & 0xFF;
+		buildMiddleTable();
+	}
+
+	/* Private methods */
+
+	/*Method: startRun()*/
+	/*
+	 * gets ready for the next run of bytes and returns how many bytes it
+	 * can hold, at most the number left. Every byte turns the fast rotor
+	 * before it is encrypted, so if the fast rotor is on its last position
+	 * the next byte carries into the medium rotor. That turn is done here
+	 * and the middle table rebuilt, leaving fastPos one before the first
+	 * position of the run
+	 */
+	private int startRun(int remaining) {
+		if (fastPos == SYMBOLS - 1) {
+			fastPos = -1;
+			if (medPos == SYMBOLS - 1) {
+				medPos = 0;
+				slowPos = (slowPos + 1) & 0xFF;
+			} else medPos++;
+			buildMiddleTable();
+		}
+		return Math.min(SYMBOLS - 1 - fastPos, remaining);
+	}
+
+	/*Method: buildMiddleTable()*/
+	/*
+	 * works out where each byte leaving the fast rotor comes back to after
+	 * going through the medium rotor, slow rotor, reflector and back, for
+	 * the current positions of the medium and slow rotors. The part from
+	 * the slow rotor to the reflector and back only changes when the slow
+	 * rotor turns, so it is kept in its own table and reused
+	 */
+	private void buildMiddleTable() {
+		if (slowTablePos != slowPos) {
+			for (int i = 0; i < SYMBOLS; i++) {
+				int b = (slowWiring[(i + slowPos) & 0xFF] - slowPos) & 0xFF;
+				b = reflector[b] & 0xFF;
+				slowTable[i] = (byte)(slowInverse[(b + slowPos) & 0xFF] - slowPos);
+			}
+			slowTablePos = slowPos;
+		}
+		byte[] mediumWiring = this.mediumWiring;
+		byte[] mediumInverse = this.mediumInverse;
+		byte[] slowTable = this.slowTable;
+		int medPos = this.medPos;
+		for (int i = 0; i < SYMBOLS; i++) {
+			int b = (mediumWiring[(i + medPos) & 0xFF] - medPos) & 0xFF;
+			b = (slowTable[b] + medPos) & 0xFF;
+			middleTable[i] = (byte)(mediumInverse[b] - medPos);
+		}
+	}
+
+	/*Method: shuffledBytes()*/
+	/*
+	 * returns the 256 byte values in a random order
+	 */
+	private static byte[] shuffledBytes(Random random) {
+		byte[] values = new byte[SYMBOLS];
+		for (int i = 0; i < SYMBOLS; i++) {
+			values[i] = (byte) i;
+		}
+		for (int i = SYMBOLS - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			byte temp = values[i];
+			values[i] = values[j];
+			values[j] = temp;
+		}
+		return values;
+	}
+
+	/*Method: inverseOf()*/
+	/*
+	 * returns the wiring that undoes a rotor's wiring
+	 */
+	private static byte[] inverseOf(byte[] wiring) {
+		byte[] inverse = new byte[SYMBOLS];
+		for (int i = 0; i < SYMBOLS; i++) {
+			inverse[wiring[i] & 0xFF] = (byte) i;
+		}
+		return inverse;
+	}
+
+	/* Private instance variables */
+	private int fastPos; //position of the fast rotor
+	private int medPos; //position of the medium rotor
+	private int slowPos; //position of the slow rotor
+	private byte[] fastWiring; //fast rotor wiring at position 0
+	private byte[] fastInverse; //inverse fast rotor wiring at position 0
+	private byte[] mediumWiring; //medium rotor wiring at position 0
+	private byte[] mediumInverse; //inverse medium rotor wiring at position 0
+	private byte[] slowWiring; //slow rotor wiring at position 0
+	private byte[] slowInverse; //inverse slow rotor wiring at position 0
+	private byte[] reflector; //swaps the byte values in pairs
+	private byte[] middleTable; //medium rotor to reflector and back, for the current run
+	private byte[] slowTable; //slow rotor to reflector and back, for the current slow position
+	private int slowTablePos; //the slow rotor position slowTable was built for
+
+	/* Private constants */
+
+	/* The number of symbols on each rotor, one for every byte value */
+	private static final int SYMBOLS = 256;
+
+	/* The number of settings of the three byte-wide rotors, one per value of each */
+	private static final int PERIOD = SYMBOLS * SYMBOLS * SYMBOLS;
+
+}
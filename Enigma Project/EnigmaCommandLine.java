@@ -0,0 +1,103 @@
+/*
+ * File: EnigmaCommandLine.java
+ * ----------------------------
+ * This is a command-line version of the Enigma simulator for encrypting
+ * whole files without the console window. The rotor order, the rotor
+ * setting and optionally the plugboard are given as arguments, and the
+ * input file is read through a memory-mapped FileChannel a piece at a
+ * time, encrypted as ASCII bytes, and written to the output file with
+ * NIO. Nothing here touches the ACM library or AWT, so it starts quickly
+ * and runs on machines with no display.
+ *
+ * Usage: java EnigmaCommandLine order setting input output [plugboard]
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class EnigmaCommandLine {
+
+	public static void main(String[] args) {
+		if (args.length < 4 || args.length > 5) {
+			System.err.println("usage: java EnigmaCommandLine order setting input output [plugboard]");
+			System.exit(2);
+		}
+		try {
+			EnigmaMachine machine = new EnigmaMachine(Integer.parseInt(args[0]), args[1],
+					args.length == 5 ? args[4] : "");
+			long bytes = encryptFile(machine, Paths.get(args[2]), Paths.get(args[3]));
+			System.err.println("encrypted " + bytes + " bytes");
+		} catch (NumberFormatException e) {
+			System.err.println("illegal rotor order: " + args[0]);
+			System.exit(2);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		} catch (IOException e) {
+			System.err.println("error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Encrypts a whole file with a machine, starting from the machine's
+	 * rotor setting.  The input is mapped into memory a region at a time,
+	 * so files larger than memory (or than 2 GB) are fine.  The output
+	 * file is created or replaced, and must not be the input file, since
+	 * replacing it would empty it before it was read.
+	 *
+	 * @param machine The machine configuration to encrypt with
+	 * @param input The file to read
+	 * @param output The file to write
+	 * @return The number of bytes encrypted
+	 * @throws IOException If reading or writing fails
+	 * @throws IllegalArgumentException If the output is the input file
+	 */
+
+	public static long encryptFile(EnigmaMachine machine, Path input, Path output) throws IOException {
+		if (Files.exists(output) && Files.isSameFile(input, output)) {
+			throw new IllegalArgumentException("output file must not be the input file: " + output);
+		}
+		EnigmaModel model = machine.newModel();
+		model.setPrecomputed(true);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			for (long start = 0; start < size; start += MAP_SIZE) {
+				long length = Math.min(MAP_SIZE, size - start);
+				MappedByteBuffer region = in.map(FileChannel.MapMode.READ_ONLY, start, length);
+				while (region.hasRemaining()) {
+					int count = Math.min(buffer.length, region.remaining());
+					region.get(buffer, 0, count);
+					model.encrypt(buffer, 0, count);
+					writeFully(out, ByteBuffer.wrap(buffer, 0, count));
+				}
+			}
+			return size;
+		}
+	}
+
+	/*Method: writeFully()*/
+	/*
+	 * writes everything left in a buffer to a channel, since a single
+	 * write isn't promised to take all of it
+	 */
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/* Private constants */
+
+	/* The size of each region of the input mapped into memory at once */
+	private static final long MAP_SIZE = 1L << 28;
+
+	/* The number of bytes encrypted and written at a time */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+}
@@ -0,0 +1,348 @@
+/*
+ * File: EnigmaCribSearch.java
+ * ---------------------------
+ * This file is a class that looks for the key of an Enigma message when
+ * part of the plaintext (a crib) is known or can be guessed. Since the
+ * reflector has no letter wired to itself, the machine can never encrypt
+ * a letter as itself, so any place where the crib has the same letter as
+ * the ciphertext can't be where the crib goes. For the places that are
+ * left, the crib and ciphertext letters are joined up into a menu, a
+ * graph whose edges say "at this position this letter turns into that
+ * one", and every rotor order and setting is checked against the menu
+ * edges one at a time, stopping at the first edge that fails. Almost
+ * every wrong setting fails on the first edge or two, so only a tiny
+ * fraction of the candidates ever get looked at closely.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class EnigmaCribSearch {
+
+	/**
+	 * Creates a new crib search.  Only letters are used from the ciphertext
+	 * and the crib, and offsets count letters rather than characters.
+	 *
+	 * @param ciphertext The message to attack
+	 * @param crib Plaintext that is thought to be somewhere in the message
+	 */
+
+	public EnigmaCribSearch(String ciphertext, String crib) {
+		cipherLetters = toLetters(ciphertext);
+		cribLetters = toLetters(crib);
+		rotorOrders = EnigmaMachine.legalRotorOrders();
+	}
+
+	/**
+	 * Searches every offset from first to last for settings that turn the
+	 * crib into the ciphertext at that offset.  Offsets that would run off
+	 * the end of the ciphertext are skipped.
+	 *
+	 * @param firstOffset The first letter offset where the crib may start
+	 * @param lastOffset The last letter offset where the crib may start
+	 * @return Every rotor order, setting and offset consistent with the crib
+	 */
+
+	public List<Match> search(int firstOffset, int lastOffset) {
+		long start = System.nanoTime();
+		lastOffset = Math.min(lastOffset, cipherLetters.length - cribLetters.length);
+		offsetsTried = 0;
+		offsetsRuledOut = 0;
+		menuLoops = 0;
+		List<int[]> menus = new ArrayList<int[]>();
+		List<Integer> offsets = new ArrayList<Integer>();
+		for (int offset = Math.max(0, firstOffset); offset <= lastOffset; offset++) {
+			offsetsTried++;
+			if (cribCanFit(offset)) {
+				menus.add(buildMenu(offset));
+				offsets.add(offset);
+			} else offsetsRuledOut++;
+		}
+		int[][] menuArray = menus.toArray(new int[menus.size()][]);
+		int[] offsetArray = new int[offsets.size()];
+		for (int i = 0; i < offsetArray.length; i++) {
+			offsetArray[i] = offsets.get(i);
+		}
+		PartialResult result = new PartialResult();
+		if (menuArray.length > 0) {
+			result = ForkJoinPool.commonPool().invoke(
+					new SearchOrders(menuArray, offsetArray, 0, rotorOrders.length));
+		}
+		candidatesTested = result.candidates;
+		edgesTested = result.edges;
+		matchCount = result.matches.size();
+		elapsedNanos = System.nanoTime() - start;
+		Collections.sort(result.matches, new Comparator<Match>() {
+			public int compare(Match a, Match b) {
+				if (a.getOffset() != b.getOffset()) return a.getOffset() - b.getOffset();
+				return a.getRotorOrder() - b.getRotorOrder();
+			}
+		});
+		return result.matches;
+	}
+
+	/**
+	 * Returns a description of the last search: how many offsets the
+	 * no-letter-to-itself rule threw out, how big the menus were, how many
+	 * candidates and menu edges were tested, and how long it took.
+	 *
+	 * @return The search statistics
+	 */
+
+	public String getStatistics() {
+		double seconds = elapsedNanos / 1e9;
+		double edgesPerCandidate = candidatesTested > 0 ? (double) edgesTested / candidatesTested : 0;
+		return String.format("%d offsets tried, %d ruled out, %d menu loops, "
+				+ "%d candidates tested, %.3f edges per candidate, %d matches, %.2f s on %d threads",
+				offsetsTried, offsetsRuledOut, menuLoops, candidatesTested, edgesPerCandidate,
+				matchCount, seconds, ForkJoinPool.commonPool().getParallelism());
+	}
+
+	/**
+	 * Runs a crib search from the command line.  The arguments are the
+	 * ciphertext, the crib, and optionally the first and last offsets.
+	 */
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println(USAGE);
+			return;
+		}
+		int first;
+		int last;
+		try {
+			first = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+			last = args.length > 3 ? Integer.parseInt(args[3]) : Integer.MAX_VALUE;
+		} catch (NumberFormatException e) {
+			System.err.println(USAGE);
+			return;
+		}
+		EnigmaCribSearch search = new EnigmaCribSearch(args[0], args[1]);
+		for (Match match : search.search(first, last)) {
+			System.out.println(match);
+		}
+		System.out.println(search.getStatistics());
+	}
+
+	/**
+	 * A rotor order and setting that turns the crib into the ciphertext at
+	 * the given offset.
+	 */
+
+	public static class Match {
+
+		public Match(int rotorOrder, String rotorSetting, int offset) {
+			this.rotorOrder = rotorOrder;
+			this.rotorSetting = rotorSetting;
+			this.offset = offset;
+		}
+
+		public int getRotorOrder() {
+			return rotorOrder;
+		}
+
+		public String getRotorSetting() {
+			return rotorSetting;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public String toString() {
+			return rotorOrder + " " + rotorSetting + " at offset " + offset;
+		}
+
+		private int rotorOrder; //the rotor order that fits the crib
+		private String rotorSetting; //the starting rotor setting that fits the crib
+		private int offset; //the letter offset of the crib in the ciphertext
+	}
+
+	/* Private methods */
+
+	/*Method: toLetters()*/
+	/*
+	 * returns the letters of a string as numbers from 0 for A to 25 for
+	 * Z, leaving out everything that isn't a letter
+	 */
+	private static byte[] toLetters(String str) {
+		str = str.toUpperCase(Locale.ROOT);
+		byte[] letters = new byte[str.length()];
+		int count = 0;
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch >= 'A' && ch <= 'Z') letters[count++] = (byte)(ch - 'A');
+		}
+		return Arrays.copyOf(letters, count);
+	}
+
+	/*Method: cribCanFit()*/
+	/*
+	 * returns false if placing the crib at the offset would need some
+	 * letter to be encrypted as itself, which the Enigma can't do
+	 */
+	private boolean cribCanFit(int offset) {
+		for (int i = 0; i < cribLetters.length; i++) {
+			if (cribLetters[i] == cipherLetters[offset + i]) return false;
+		}
+		return true;
+	}
+
+	/*Method: buildMenu()*/
+	/*
+	 * builds the menu for the crib at an offset and returns its edges in
+	 * the order they should be tested, packed as three numbers per edge:
+	 * the position in the message, the plaintext letter and the
+	 * ciphertext letter. The edges are visited breadth first starting
+	 * from the letter with the most edges, so the busiest part of the
+	 * menu (where the loops are) gets tested first. The number of loops,
+	 * edges minus letters plus connected pieces, is added to the
+	 * statistics.
+	 */
+	private int[] buildMenu(int offset) {
+		int edgeCount = cribLetters.length;
+		int[] degree = new int[26];
+		for (int i = 0; i < edgeCount; i++) {
+			degree[cribLetters[i]]++;
+			degree[cipherLetters[offset + i]]++;
+		}
+		int[] menu = new int[edgeCount * 3];
+		boolean[] edgeUsed = new boolean[edgeCount];
+		boolean[] letterSeen = new boolean[26];
+		int[] queue = new int[26];
+		int filled = 0;
+		int letters = 0;
+		int pieces = 0;
+		while (filled < edgeCount) {
+			int root = -1;
+			for (int letter = 0; letter < 26; letter++) {
+				if (!letterSeen[letter] && degree[letter] > 0 && (root == -1 || degree[letter] > degree[root])) {
+					root = letter;
+				}
+			}
+			pieces++;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = root;
+			letterSeen[root] = true;
+			while (head < tail) {
+				int letter = queue[head++];
+				letters++;
+				for (int i = 0; i < edgeCount; i++) {
+					if (edgeUsed[i]) continue;
+					int plain = cribLetters[i];
+					int cipher = cipherLetters[offset + i];
+					if (plain != letter && cipher != letter) continue;
+					edgeUsed[i] = true;
+					menu[filled * 3] = offset + i;
+					menu[filled * 3 + 1] = plain;
+					menu[filled * 3 + 2] = cipher;
+					filled++;
+					int other = plain == letter ? cipher : plain;
+					if (!letterSeen[other]) {
+						letterSeen[other] = true;
+						queue[tail++] = other;
+					}
+				}
+			}
+		}
+		menuLoops += edgeCount - letters + pieces;
+		return menu;
+	}
+
+	/*Method: menuHolds()*/
+	/*
+	 * checks the edges of a menu against one starting rotor position,
+	 * stopping at the first edge the machine doesn't agree with. Returns
+	 * the number of edges tested, made negative if every edge held.
+	 */
+	private static int menuHolds(byte[] table, int position, int[] menu) {
+		int edges = menu.length / 3;
+		for (int i = 0; i < edges; i++) {
+			int index = position + menu[i * 3] + 1;
+			if (index >= EnigmaMachine.PERIOD) index %= EnigmaMachine.PERIOD;
+			if (table[index * 26 + menu[i * 3 + 1]] != menu[i * 3 + 2]) return i + 1;
+		}
+		return -edges;
+	}
+
+	/*
+	 * Checks every menu against every setting for a range of rotor orders,
+	 * splitting the range in half until it is a single rotor order.
+	 */
+	private class SearchOrders extends RecursiveTask<PartialResult> {
+
+		public SearchOrders(int[][] menus, int[] offsets, int first, int last) {
+			this.menus = menus;
+			this.offsets = offsets;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected PartialResult compute() {
+			if (last - first > 1) {
+				int middle = (first + last) / 2;
+				SearchOrders left = new SearchOrders(menus, offsets, first, middle);
+				left.fork();
+				PartialResult result = new SearchOrders(menus, offsets, middle, last).compute();
+				result.add(left.join());
+				return result;
+			}
+			PartialResult result = new PartialResult();
+			int order = rotorOrders[first];
+			byte[] table = new EnigmaMachine(order, "AAA", "").buildPeriodTable();
+			EnigmaModel model = new EnigmaModel();
+			for (int m = 0; m < menus.length; m++) {
+				for (int position = 0; position < EnigmaMachine.PERIOD; position++) {
+					int edges = menuHolds(table, position, menus[m]);
+					result.candidates++;
+					if (edges < 0) {
+						result.edges -= edges;
+						model.setRotorPosition(position);
+						result.matches.add(new Match(order, model.getRotorSetting(), offsets[m]));
+					} else result.edges += edges;
+				}
+			}
+			return result;
+		}
+
+		private int[][] menus; //the menu for every offset that survived
+		private int[] offsets; //the offset each menu belongs to
+		private int first; //the first rotor order in this range
+		private int last; //one past the last rotor order in this range
+	}
+
+	/*
+	 * The matches and counters from searching part of the rotor orders.
+	 */
+	private class PartialResult {
+
+		public void add(PartialResult other) {
+			matches.addAll(other.matches);
+			candidates += other.candidates;
+			edges += other.edges;
+		}
+
+		private List<Match> matches = new ArrayList<Match>(); //the settings that fit so far
+		private long candidates; //the number of settings checked
+		private long edges; //the number of menu edges checked
+	}
+
+	/* Private instance variables */
+	private byte[] cipherLetters; //the letters of the ciphertext, 0 for A through 25 for Z
+	private byte[] cribLetters; //the letters of the crib, 0 for A through 25 for Z
+	private int[] rotorOrders; //every legal rotor order
+	private long offsetsTried; //the number of offsets looked at in the last search
+	private long offsetsRuledOut; //the offsets where a letter would encrypt to itself
+	private long menuLoops; //the total number of loops in the menus built
+	private long candidatesTested; //the number of settings checked against a menu
+	private long edgesTested; //the number of menu edges checked altogether
+	private long matchCount; //the number of matches in the last search
+	private long elapsedNanos; //how long the last search took
+
+	/* Private constants */
+
+	/* The usage line printed for missing or malformed arguments */
+	private static final String USAGE = "usage: java EnigmaCribSearch ciphertext crib [firstOffset lastOffset]";
+
+}
@@ -0,0 +1,342 @@
+/*
+ * File: EnigmaDefinition.java
+ * ---------------------------
+ * This file is a class that describes an Enigma machine in general terms
+ * instead of the fixed three stock rotors of EnigmaModel: any number of
+ * stepping rotors with their own wirings and notch letters, ring
+ * settings, any reflector, an optional thin fourth rotor like the naval
+ * M4 had, a choice between simple odometer stepping and the double
+ * stepping of the real machines, and a plugboard. A definition never
+ * changes once it is made, and all of its rotors are compiled into
+ * lookup tables right away. The ring settings are folded into the rotor
+ * tables and the plugboard into the fast rotor's tables, so they cost
+ * nothing per letter, and the thin rotor, which never turns, is folded
+ * into the reflector by each EnigmaRotorKernel when it is set up.
+ */
+
+import java.util.*;
+
+public class EnigmaDefinition {
+
+	/**
+	 * Creates a new machine definition.  Rotors are listed from left to
+	 * right, so the slowest rotor comes first and the fast rotor last,
+	 * the same way rotor orders and settings are written.
+	 *
+	 * @param rotors The wiring of each stepping rotor, slowest first
+	 * @param notches The notch letters of each rotor; the next rotor turns
+	 *        when this rotor steps away from one of them
+	 * @param rings The ring setting of each rotor, thin rotor first if
+	 *        there is one, or "" for all A
+	 * @param reflector The wiring of the reflector
+	 * @param thinRotor The wiring of the thin rotor, or null for none
+	 * @param doubleStepping Whether a middle rotor at its notch steps again
+	 *        along with the rotor on its left, as on the real machines
+	 * @param plugboard The pairs of letters to swap, or "" for no plugs
+	 * @throws IllegalArgumentException If any part of the definition is illegal
+	 */
+
+	public EnigmaDefinition(String[] rotors, String[] notches, String rings, String reflector,
+			String thinRotor, boolean doubleStepping, String plugboard) {
+		if (rotors.length == 0 || rotors.length != notches.length) {
+			throw new IllegalArgumentException("need at least one rotor and one notch string per rotor");
+		}
+		rotorCount = rotors.length;
+		hasThinRotor = thinRotor != null;
+		int ringCount = rotorCount + (hasThinRotor ? 1 : 0);
+		if (rings.length() == 0) rings = "A".repeat(ringCount);
+		if (rings.length() != ringCount || !isLetters(rings)) {
+			throw new IllegalArgumentException("need one ring letter per rotor: " + rings);
+		}
+		rings = rings.toUpperCase(Locale.ROOT);
+		String plugs = EnigmaMachine.normalizePlugboard(plugboard);
+		if (plugs == null) {
+			throw new IllegalArgumentException("illegal plugboard: " + plugboard);
+		}
+		reflectorTable = permutation(reflector);
+		for (int i = 0; i < 26; i++) {
+			if (reflectorTable[i] == i || reflectorTable[reflectorTable[i]] != i) {
+				throw new IllegalArgumentException("reflector must swap letters in pairs: " + reflector);
+			}
+		}
+		forward = new byte[rotorCount * 26 * 26];
+		inverse = new byte[rotorCount * 26 * 26];
+		notchMasks = new int[rotorCount];
+		int ringOffset = hasThinRotor ? 1 : 0;
+		for (int i = 0; i < rotorCount; i++) {
+			int rotor = rotorCount - 1 - i;
+			compileRotor(permutation(rotors[rotor]), rings.charAt(ringOffset + rotor) - 'A',
+					forward, inverse, i * 26 * 26);
+			notchMasks[i] = notchMask(notches[rotor]);
+		}
+		if (hasThinRotor) {
+			thinForward = new byte[26 * 26];
+			thinInverse = new byte[26 * 26];
+			compileRotor(permutation(thinRotor), rings.charAt(0) - 'A', thinForward, thinInverse, 0);
+		} else {
+			thinForward = null;
+			thinInverse = null;
+		}
+		if (plugs.length() > 0) {
+			foldPlugboard(plugs);
+		}
+		this.doubleStepping = doubleStepping;
+	}
+
+	/**
+	 * Returns the definition of the machine that EnigmaModel simulates for
+	 * a rotor order: three stock rotors that turn over at Z, the stock
+	 * reflector, simple odometer stepping and no plugs.
+	 *
+	 * @param rotorOrder A three-digit integer specifying the rotor order
+	 * @return The definition of the stock machine
+	 */
+
+	public static EnigmaDefinition stock(int rotorOrder) {
+		if (!EnigmaMachine.rotorOrderIsLegal(rotorOrder)) {
+			throw new IllegalArgumentException("illegal rotor order: " + rotorOrder);
+		}
+		String[] rotors = {
+			EnigmaMachine.stockRotor(rotorOrder / 100),
+			EnigmaMachine.stockRotor((rotorOrder / 10) % 10),
+			EnigmaMachine.stockRotor(rotorOrder % 10)
+		};
+		String[] notches = { "Z", "Z", "Z" };
+		return new EnigmaDefinition(rotors, notches, "", EnigmaMachine.stockReflector(), null, false, "");
+	}
+
+	/**
+	 * Returns the definition of a historical German machine built from the
+	 * named rotors and reflector, with double stepping.  Rotors are named
+	 * I to VIII and listed slowest first, separated by spaces.  The naval
+	 * M4 is made by putting the thin rotor Beta or Gamma first and using
+	 * the thin reflector B-thin or C-thin; the other reflectors are B
+	 * and C.  For example, historical("B-thin", "Beta II IV I", "AAAV",
+	 * "AT BL") is an M4 setup.
+	 *
+	 * @param reflector The name of the reflector
+	 * @param rotors The names of the rotors, slowest first
+	 * @param rings The ring settings, one letter per rotor, or "" for all A
+	 * @param plugboard The pairs of letters to swap, or "" for no plugs
+	 * @return The definition of the machine
+	 */
+
+	public static EnigmaDefinition historical(String reflector, String rotors, String rings, String plugboard) {
+		String[] names = rotors.trim().split("\\s+");
+		String thinRotor = null;
+		int first = 0;
+		if (names[0].equals("Beta") || names[0].equals("Gamma")) {
+			thinRotor = names[0].equals("Beta") ? BETA : GAMMA;
+			first = 1;
+		}
+		String[] wirings = new String[names.length - first];
+		String[] notches = new String[names.length - first];
+		for (int i = first; i < names.length; i++) {
+			int index = rotorIndex(names[i]);
+			wirings[i - first] = HISTORICAL_ROTORS[index];
+			notches[i - first] = HISTORICAL_NOTCHES[index];
+		}
+		return new EnigmaDefinition(wirings, notches, rings, reflectorWiring(reflector), thinRotor, true, plugboard);
+	}
+
+	/**
+	 * Creates a kernel that encrypts with this machine, starting from the
+	 * given rotor setting.  The setting has one letter per rotor, written
+	 * slowest first with the thin rotor, if there is one, at the front.
+	 *
+	 * @param rotorSetting The starting rotor setting
+	 * @return A new kernel at that setting
+	 */
+
+	public EnigmaRotorKernel newKernel(String rotorSetting) {
+		return new EnigmaRotorKernel(this, rotorSetting);
+	}
+
+	/**
+	 * Gets the number of rotors that step, not counting a thin rotor.
+	 *
+	 * @return The number of stepping rotors
+	 */
+
+	public int getRotorCount() {
+		return rotorCount;
+	}
+
+	/**
+	 * Tells whether this machine has a thin fourth rotor.
+	 *
+	 * @return True if there is a thin rotor
+	 */
+
+	public boolean hasThinRotor() {
+		return hasThinRotor;
+	}
+
+	/* Private methods */
+
+	/*Method: permutation()*/
+	/*
+	 * turns a wiring string into an array of 26 letter numbers, checking
+	 * that it uses every letter exactly once
+	 */
+	private static byte[] permutation(String wiring) {
+		if (wiring == null || wiring.length() != 26 || !isLetters(wiring)) {
+			throw new IllegalArgumentException("wiring must be 26 letters: " + wiring);
+		}
+		wiring = wiring.toUpperCase(Locale.ROOT);
+		byte[] table = new byte[26];
+		int seen = 0;
+		for (int i = 0; i < 26; i++) {
+			int letter = wiring.charAt(i) - 'A';
+			seen |= 1 << letter;
+			table[i] = (byte) letter;
+		}
+		if (seen != (1 << 26) - 1) {
+			throw new IllegalArgumentException("wiring must use every letter once: " + wiring);
+		}
+		return table;
+	}
+
+	/*Method: isLetters()*/
+	/*
+	 * checks that every character of a string is a letter from A to Z in
+	 * either case
+	 */
+	private static boolean isLetters(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			char ch = Character.toUpperCase(str.charAt(i));
+			if (ch < 'A' || ch > 'Z') return false;
+		}
+		return true;
+	}
+
+	/*Method: notchMask()*/
+	/*
+	 * returns a bit mask with one bit set for each notch letter, bit 0
+	 * for A through bit 25 for Z
+	 */
+	private static int notchMask(String notches) {
+		if (notches.length() == 0 || !isLetters(notches)) {
+			throw new IllegalArgumentException("notches must be letters: " + notches);
+		}
+		notches = notches.toUpperCase(Locale.ROOT);
+		int mask = 0;
+		for (int i = 0; i < notches.length(); i++) {
+			mask |= 1 << (notches.charAt(i) - 'A');
+		}
+		return mask;
+	}
+
+	/*Method: compileRotor()*/
+	/*
+	 * fills in the 26 * 26 forward and inverse entries for one rotor at
+	 * the given offset of the tables. Entry position * 26 + letter is
+	 * where the letter goes when the rotor shows that position. The ring
+	 * setting turns the wiring against the letters on the rotor, which is
+	 * the same as looking up a different position, so it is applied here
+	 * once by shifting which position each block of the table is built for
+	 */
+	private static void compileRotor(byte[] wiring, int ring, byte[] forward, byte[] inverse, int offset) {
+		for (int pos = 0; pos < 26; pos++) {
+			int shift = (pos - ring + 26) % 26;
+			for (int i = 0; i < 26; i++) {
+				int out = (wiring[(i + shift) % 26] - shift + 26) % 26;
+				forward[offset + pos * 26 + i] = (byte) out;
+				inverse[offset + pos * 26 + out] = (byte) i;
+			}
+		}
+	}
+
+	/*Method: foldPlugboard()*/
+	/*
+	 * folds the plugboard into the fast rotor's tables, which are the
+	 * first 676 entries, so letters are swapped on the way into the fast
+	 * rotor and again on the way out of it
+	 */
+	private void foldPlugboard(String plugs) {
+		byte[] swap = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			swap[i] = (byte) i;
+		}
+		for (int i = 0; i + 1 < plugs.length(); i += 3) {
+			int a = plugs.charAt(i) - 'A';
+			int b = plugs.charAt(i + 1) - 'A';
+			swap[a] = (byte) b;
+			swap[b] = (byte) a;
+		}
+		byte[] fast = new byte[26];
+		for (int pos = 0; pos < 26; pos++) {
+			for (int i = 0; i < 26; i++) {
+				fast[i] = forward[pos * 26 + swap[i]];
+			}
+			System.arraycopy(fast, 0, forward, pos * 26, 26);
+			for (int i = 0; i < 26; i++) {
+				inverse[pos * 26 + i] = swap[inverse[pos * 26 + i]];
+			}
+		}
+	}
+
+	/*Method: rotorIndex()*/
+	/*
+	 * returns the index in HISTORICAL_ROTORS of a rotor named I to VIII
+	 */
+	private static int rotorIndex(String name) {
+		for (int i = 0; i < HISTORICAL_NAMES.length; i++) {
+			if (HISTORICAL_NAMES[i].equals(name)) return i;
+		}
+		throw new IllegalArgumentException("unknown rotor: " + name);
+	}
+
+	/*Method: reflectorWiring()*/
+	/*
+	 * returns the wiring of a historical reflector by name
+	 */
+	private static String reflectorWiring(String name) {
+		if (name.equals("B")) return REFLECTOR_B;
+		if (name.equals("C")) return REFLECTOR_C;
+		if (name.equals("B-thin")) return REFLECTOR_B_THIN;
+		if (name.equals("C-thin")) return REFLECTOR_C_THIN;
+		throw new IllegalArgumentException("unknown reflector: " + name);
+	}
+
+	/* Compiled tables, shared with every kernel made from this definition */
+	final int rotorCount; //the number of stepping rotors
+	final boolean hasThinRotor; //whether there is a thin rotor next to the reflector
+	final boolean doubleStepping; //whether middle rotors double step
+	final byte[] forward; //the forward tables of the rotors, fast rotor first, 676 entries each
+	final byte[] inverse; //the inverse tables of the rotors, in the same layout
+	final int[] notchMasks; //the notch letters of each rotor as bits, fast rotor first
+	final byte[] reflectorTable; //the reflector as letter numbers
+	final byte[] thinForward; //the forward table of the thin rotor, or null
+	final byte[] thinInverse; //the inverse table of the thin rotor, or null
+
+	/* Private constants */
+
+	/*
+	 * The names, wirings and notch letters of the historical rotors I to
+	 * VIII. Rotors I to V are EnigmaMachine's five stock rotors.
+	 */
+	private static final String[] HISTORICAL_NAMES = { "I", "II", "III", "IV", "V", "VI", "VII", "VIII" };
+	private static final String[] HISTORICAL_ROTORS = {
+		EnigmaMachine.stockRotor(1),
+		EnigmaMachine.stockRotor(2),
+		EnigmaMachine.stockRotor(3),
+		EnigmaMachine.stockRotor(4),
+		EnigmaMachine.stockRotor(5),
+		"JPGVOUMFYQBENHZRDKASXLICTW",
+		"NZJHGRCXMYSWBOUFAIVLPEKQDT",
+		"FKQHTLXOCBJSPDZRAMEWNIUYGV"
+	};
+	private static final String[] HISTORICAL_NOTCHES = { "Q", "E", "V", "J", "Z", "ZM", "ZM", "ZM" };
+
+	/* The thin rotors of the M4 */
+	private static final String BETA = "LEYJVCNIXWPBQMDRTAKZGFUHOS";
+	private static final String GAMMA = "FSOKANUERHMBTIYCWLQPZXVGJD";
+
+	/* The historical reflectors, the thin ones being for the M4 */
+	private static final String REFLECTOR_B = "YRUHQSLDPXNGOKMIEBFZCWVJAT";
+	private static final String REFLECTOR_C = "FVPJIAOYEDRZXWGCTKUQSBNMHL";
+	private static final String REFLECTOR_B_THIN = "ENKQAUYWJICOPBLMDXZVFTHRGS";
+	private static final String REFLECTOR_C_THIN = "RDOBJNTKVEHMLFCWZAXGYIPSUQ";
+
+}
@@ -0,0 +1,223 @@
+/*
+ * File: EnigmaIndicatorTable.java
+ * -------------------------------
+ * This file is a class for finding message keys from encrypted
+ * indicators. An indicator is a known three-letter group (such as "AAA")
+ * typed at the start of a message, so its encryption depends only on the
+ * rotor order and the rotor setting. The table is built once by running
+ * the indicator through every legal rotor order and every setting, and
+ * saved as a binary file of records sorted by the encrypted trigram.
+ * Looking up an encrypted indicator is then a binary search over the
+ * memory-mapped file, and several processes reading the same file share
+ * it through the operating system's page cache.
+ *
+ * Usage: java EnigmaIndicatorTable build file [indicator]
+ *        java EnigmaIndicatorTable lookup file trigram
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class EnigmaIndicatorTable {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 2 && args[0].equals("build")) {
+			String indicator = args.length > 2 ? args[2] : "AAA";
+			long start = System.nanoTime();
+			build(Paths.get(args[1]), indicator);
+			System.err.printf("built table for %s in %.2f s%n", indicator.toUpperCase(Locale.ROOT),
+					(System.nanoTime() - start) / 1e9);
+		} else if (args.length == 3 && args[0].equals("lookup")) {
+			EnigmaIndicatorTable table = open(Paths.get(args[1]));
+			for (Entry entry : table.lookup(args[2])) {
+				System.out.println(entry);
+			}
+		} else {
+			System.err.println("usage: java EnigmaIndicatorTable build file [indicator]");
+			System.err.println("       java EnigmaIndicatorTable lookup file trigram");
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Builds the table for an indicator and writes it to a file.  Every one
+	 * of the 60 legal rotor orders and 17,576 settings gets a record, so
+	 * the file is a little over 8 MB.
+	 *
+	 * @param file The file to write
+	 * @param indicator The three-letter plaintext indicator
+	 * @throws IOException If the file can't be written
+	 */
+
+	public static void build(Path file, String indicator) throws IOException {
+		if (!EnigmaMachine.rotorSettingIsLegal(indicator)) {
+			throw new IllegalArgumentException("indicator must be three letters: " + indicator);
+		}
+		indicator = indicator.toUpperCase(Locale.ROOT);
+		int[] orders = EnigmaMachine.legalRotorOrders();
+		long[] records = new long[orders.length * EnigmaMachine.PERIOD];
+		int count = 0;
+		for (int i = 0; i < orders.length; i++) {
+			EnigmaModel model = new EnigmaMachine(orders[i], "AAA", "").newModel();
+			for (int position = 0; position < EnigmaMachine.PERIOD; position++) {
+				model.setRotorPosition(position);
+				int trigram = 0;
+				for (int j = 0; j < 3; j++) {
+					trigram = trigram * 26 + (model.pressKey(indicator.charAt(j)) - 'A');
+				}
+				records[count++] = ((long) trigram << 32) | ((long) orders[i] << 16) | position;
+			}
+		}
+		Arrays.sort(records);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + records.length * 8);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.put((byte) indicator.charAt(0));
+		buffer.put((byte) indicator.charAt(1));
+		buffer.put((byte) indicator.charAt(2));
+		buffer.put((byte) 0);
+		buffer.putInt(records.length);
+		buffer.asLongBuffer().put(records);
+		buffer.rewind();
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				out.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Opens a table file made by build() by mapping it into memory.
+	 *
+	 * @param file The table file
+	 * @return The table, ready for lookups
+	 * @throws IOException If the file can't be read or isn't a table
+	 */
+
+	public static EnigmaIndicatorTable open(Path file) throws IOException {
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+				throw new IOException("not an indicator table: " + file);
+			}
+			int count = map.getInt(12);
+			if (map.limit() != HEADER_SIZE + (long) count * 8) {
+				throw new IOException("indicator table is the wrong size: " + file);
+			}
+			String indicator = "" + (char) map.get(8) + (char) map.get(9) + (char) map.get(10);
+			map.position(HEADER_SIZE);
+			return new EnigmaIndicatorTable(indicator, map.slice().asLongBuffer());
+		}
+	}
+
+	/**
+	 * Gets the plaintext indicator this table was built for.
+	 *
+	 * @return The plaintext indicator
+	 */
+
+	public String getIndicator() {
+		return indicator;
+	}
+
+	/**
+	 * Finds every rotor order and setting that encrypts the indicator to
+	 * the given trigram.
+	 *
+	 * @param trigram The encrypted indicator
+	 * @return The matching rotor orders and settings
+	 */
+
+	public List<Entry> lookup(String trigram) {
+		if (!EnigmaMachine.rotorSettingIsLegal(trigram)) {
+			throw new IllegalArgumentException("trigram must be three letters: " + trigram);
+		}
+		trigram = trigram.toUpperCase(Locale.ROOT);
+		long key = (trigram.charAt(0) - 'A') * 26 * 26 + (trigram.charAt(1) - 'A') * 26
+				+ (trigram.charAt(2) - 'A');
+		List<Entry> entries = new ArrayList<Entry>();
+		EnigmaModel model = new EnigmaModel();
+		for (int i = firstRecord(key << 32); i < records.limit(); i++) {
+			long record = records.get(i);
+			if ((record >>> 32) != key) break;
+			model.setRotorPosition((int)(record & 0xFFFF));
+			entries.add(new Entry((int)((record >>> 16) & 0xFFFF), model.getRotorSetting()));
+		}
+		return entries;
+	}
+
+	/**
+	 * A rotor order and setting found in the table.
+	 */
+
+	public static class Entry {
+
+		public Entry(int rotorOrder, String rotorSetting) {
+			this.rotorOrder = rotorOrder;
+			this.rotorSetting = rotorSetting;
+		}
+
+		public int getRotorOrder() {
+			return rotorOrder;
+		}
+
+		public String getRotorSetting() {
+			return rotorSetting;
+		}
+
+		public String toString() {
+			return rotorOrder + " " + rotorSetting;
+		}
+
+		private int rotorOrder; //the rotor order
+		private String rotorSetting; //the rotor setting
+	}
+
+	/* Private methods */
+
+	/*Constructor*/
+	/*
+	 * wraps the records of a table that has already been opened
+	 */
+	private EnigmaIndicatorTable(String indicator, LongBuffer records) {
+		this.indicator = indicator;
+		this.records = records;
+	}
+
+	/*Method: firstRecord()*/
+	/*
+	 * binary searches for the index of the first record that is at least
+	 * the given value, or the number of records if there isn't one
+	 */
+	private int firstRecord(long value) {
+		int low = 0;
+		int high = records.limit();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (records.get(middle) < value) {
+				low = middle + 1;
+			} else high = middle;
+		}
+		return low;
+	}
+
+	/* Private instance variables */
+	private String indicator; //the plaintext indicator the table was built for
+	private LongBuffer records; //the sorted records, mapped from the file
+
+	/* Private constants */
+
+	/* The first four bytes of every table file, "ENIX" */
+	private static final int MAGIC = 0x454E4958;
+
+	/* The version of the file layout */
+	private static final int VERSION = 1;
+
+	/* The bytes before the first record: magic, version, indicator, count */
+	private static final int HEADER_SIZE = 16;
+
+}
@@ -0,0 +1,280 @@
+/*
+ * File: EnigmaKeySearch.java
+ * --------------------------
+ * This file is a class that tries to recover the key of an Enigma message
+ * by brute force. It decrypts the ciphertext under every legal rotor order
+ * and every rotor setting, about a million candidates in all, and ranks
+ * each attempt by its index of coincidence. English text has a much
+ * higher index of coincidence than the flat letter counts produced by a
+ * wrong key, so the right key ends up near the top of the list. The work
+ * is spread over all the cores with a fork/join pool, and each block of
+ * settings is scored a row at a time by an EnigmaMultiKeyKernel, or by
+ * the Vector API kernel in the vector directory if that has been built.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class EnigmaKeySearch {
+
+	/**
+	 * Creates a new key search for a ciphertext.  Only the letters of the
+	 * ciphertext are used, since anything else is copied through by the
+	 * Enigma machine without turning the rotors.
+	 *
+	 * @param ciphertext The message to attack
+	 */
+
+	public EnigmaKeySearch(String ciphertext) {
+		ciphertext = ciphertext.toUpperCase(Locale.ROOT);
+		int count = 0;
+		for (int i = 0; i < ciphertext.length(); i++) {
+			char ch = ciphertext.charAt(i);
+			if (ch >= 'A' && ch <= 'Z') count++;
+		}
+		letters = new byte[count];
+		count = 0;
+		for (int i = 0; i < ciphertext.length(); i++) {
+			char ch = ciphertext.charAt(i);
+			if (ch >= 'A' && ch <= 'Z') letters[count++] = (byte)(ch - 'A');
+		}
+		rotorOrders = EnigmaMachine.legalRotorOrders();
+	}
+
+	/**
+	 * Tries every rotor order and rotor setting and returns the best
+	 * candidates, highest score first.
+	 *
+	 * @param count The number of candidates to return, at least 1
+	 * @return The best candidates found
+	 * @throws IllegalArgumentException If count is less than 1
+	 */
+
+	public List<Candidate> search(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("count must be at least 1");
+		}
+		long start = System.nanoTime();
+		byte[][] tables = new byte[rotorOrders.length][];
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		pool.invoke(new BuildTables(tables, 0, rotorOrders.length));
+		TopCandidates best = pool.invoke(new SearchRange(tables, count, 0, rotorOrders.length * 26));
+		elapsedNanos = System.nanoTime() - start;
+		candidatesTested = (long) rotorOrders.length * EnigmaMachine.PERIOD;
+		return best.toList();
+	}
+
+	/**
+	 * Returns a line describing how long the last search took and how many
+	 * candidates and letters it got through per second.
+	 *
+	 * @return The throughput report
+	 */
+
+	public String getReport() {
+		double seconds = elapsedNanos / 1e9;
+		long lettersTried = candidatesTested * letters.length;
+		return String.format("%d candidates x %d letters in %.2f s: %.0f candidates/s, %.0f letters/s on %d threads",
+				candidatesTested, letters.length, seconds, candidatesTested / seconds,
+				lettersTried / seconds, ForkJoinPool.commonPool().getParallelism());
+	}
+
+	/**
+	 * Runs a search from the command line.  The first argument is the
+	 * ciphertext and the optional second argument is how many candidates
+	 * to print.
+	 */
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("usage: java EnigmaKeySearch ciphertext [count]");
+			return;
+		}
+		try {
+			int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+			EnigmaKeySearch search = new EnigmaKeySearch(args[0]);
+			for (Candidate candidate : search.search(count)) {
+				System.out.println(candidate);
+			}
+			System.out.println(search.getReport());
+		} catch (IllegalArgumentException e) {
+			System.err.println("error: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * A possible key found by the search: a rotor order, a starting rotor
+	 * setting, and the index of coincidence of the text it decrypts to.
+	 */
+
+	public static class Candidate {
+
+		public Candidate(int rotorOrder, String rotorSetting, double score) {
+			this.rotorOrder = rotorOrder;
+			this.rotorSetting = rotorSetting;
+			this.score = score;
+		}
+
+		public int getRotorOrder() {
+			return rotorOrder;
+		}
+
+		public String getRotorSetting() {
+			return rotorSetting;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public String toString() {
+			return rotorOrder + " " + rotorSetting + " " + String.format("%.5f", score);
+		}
+
+		private int rotorOrder; //the rotor order of the key
+		private String rotorSetting; //the starting rotor setting of the key
+		private double score; //the index of coincidence of the decryption
+	}
+
+	/* Private methods */
+
+	/*
+	 * Builds the full-period tables for a range of rotor orders. These are
+	 * built directly rather than through the EnigmaMachine cache since all
+	 * 60 of them are needed at once.
+	 */
+	private class BuildTables extends RecursiveAction {
+
+		public BuildTables(byte[][] tables, int first, int last) {
+			this.tables = tables;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if (last - first == 1) {
+				byte[] periodTable = new EnigmaMachine(rotorOrders[first], "AAA", "").buildPeriodTable();
+				tables[first] = EnigmaMultiKeyKernel.laneTable(periodTable);
+			} else {
+				int middle = (first + last) / 2;
+				invokeAll(new BuildTables(tables, first, middle), new BuildTables(tables, middle, last));
+			}
+		}
+
+		private byte[][] tables; //the tables being built, one per rotor order
+		private int first; //the first rotor order in this range
+		private int last; //one past the last rotor order in this range
+	}
+
+	/*
+	 * Searches a range of blocks, where each block is one rotor order with
+	 * one slow rotor letter, or 676 candidates. The range is split in half
+	 * until it is a single block, and the best candidates from each half
+	 * are merged on the way back up.
+	 */
+	private class SearchRange extends RecursiveTask<TopCandidates> {
+
+		public SearchRange(byte[][] tables, int count, int first, int last) {
+			this.tables = tables;
+			this.count = count;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected TopCandidates compute() {
+			if (last - first == 1) {
+				int orderIndex = first / 26;
+				byte[] table = tables[orderIndex];
+				EnigmaMultiKeyKernel kernel = EnigmaMultiKeyKernel.create(KERNEL_LANES);
+				long[] scores = new long[KERNEL_LANES];
+				TopCandidates best = new TopCandidates(count);
+				int firstPosition = (first % 26) * 26 * 26;
+				int lastPosition = firstPosition + 26 * 26;
+				for (int position = firstPosition; position < lastPosition; position += KERNEL_LANES) {
+					kernel.score(table, letters, position, scores);
+					int lanes = Math.min(KERNEL_LANES, lastPosition - position);
+					for (int lane = 0; lane < lanes; lane++) {
+						best.offer(scores[lane], rotorOrders[orderIndex], position + lane);
+					}
+				}
+				return best;
+			}
+			int middle = (first + last) / 2;
+			SearchRange left = new SearchRange(tables, count, first, middle);
+			left.fork();
+			TopCandidates best = new SearchRange(tables, count, middle, last).compute();
+			best.merge(left.join());
+			return best;
+		}
+
+		private byte[][] tables; //the lane table for every rotor order
+		private int count; //how many candidates to keep
+		private int first; //the first block in this range
+		private int last; //one past the last block in this range
+	}
+
+	/*
+	 * Keeps the best few candidates seen so far in plain arrays, so that
+	 * offering a candidate that doesn't make the list costs one comparison
+	 * and never allocates anything.
+	 */
+	private class TopCandidates {
+
+		public TopCandidates(int count) {
+			scores = new long[count];
+			orders = new int[count];
+			positions = new int[count];
+			Arrays.fill(scores, -1);
+		}
+
+		public void offer(long score, int order, int position) {
+			if (score <= scores[lowest]) return;
+			scores[lowest] = score;
+			orders[lowest] = order;
+			positions[lowest] = position;
+			for (int i = 0; i < scores.length; i++) {
+				if (scores[i] < scores[lowest]) lowest = i;
+			}
+		}
+
+		public void merge(TopCandidates other) {
+			for (int i = 0; i < other.scores.length; i++) {
+				if (other.scores[i] >= 0) offer(other.scores[i], other.orders[i], other.positions[i]);
+			}
+		}
+
+		public List<Candidate> toList() {
+			List<Candidate> list = new ArrayList<Candidate>();
+			EnigmaModel model = new EnigmaModel();
+			double pairs = (double) letters.length * (letters.length - 1);
+			for (int i = 0; i < scores.length; i++) {
+				if (scores[i] < 0) continue;
+				model.setRotorPosition(positions[i]);
+				list.add(new Candidate(orders[i], model.getRotorSetting(), pairs > 0 ? scores[i] / pairs : 0));
+			}
+			Collections.sort(list, new Comparator<Candidate>() {
+				public int compare(Candidate a, Candidate b) {
+					return Double.compare(b.getScore(), a.getScore());
+				}
+			});
+			return list;
+		}
+
+		private long[] scores; //the raw scores of the candidates kept, -1 if empty
+		private int[] orders; //the rotor orders of the candidates kept
+		private int[] positions; //the starting rotor positions of the candidates kept
+		private int lowest; //the index of the lowest score kept
+	}
+
+	/* Private instance variables */
+	private byte[] letters; //the letters of the ciphertext, 0 for A through 25 for Z
+	private int[] rotorOrders; //every legal rotor order
+	private long candidatesTested; //the number of candidates tried in the last search
+	private long elapsedNanos; //how long the last search took
+
+	/* Private constants */
+
+	/* The number of settings the kernel scores at once, a whole 512-bit vector of bytes */
+	private static final int KERNEL_LANES = 64;
+
+}
@@ -0,0 +1,449 @@
+/*
+ * File: EnigmaMachine.java
+ * ------------------------
+ * This file is a class that holds the configuration of an Enigma machine:
+ * the rotor order, the starting rotor setting and the plugboard, along
+ * with the lookup tables compiled from them. An EnigmaMachine never
+ * changes once it is made, so one can be shared by any number of threads.
+ * Encrypting is done by an EnigmaModel, which keeps the rotor positions
+ * for one message and is cheap to make, so each request can make its own
+ * model from a shared machine without any locking.
+ */
+
+import java.util.*;
+
+public class EnigmaMachine {
+
+	/**
+	 * Creates a new machine configuration and compiles its tables.  The
+	 * rotor order and setting follow the rules of EnigmaModel's
+	 * setRotorOrder() and setRotorSetting(), and the plugboard follows the
+	 * rules of setPlugboard().
+	 *
+	 * @param rotorOrder A three-digit integer specifying the rotor order
+	 * @param rotorSetting The starting rotor setting
+	 * @param plugboard The pairs of letters to swap, or "" for no plugs
+	 * @throws IllegalArgumentException If any of the three is illegal
+	 */
+
+	public EnigmaMachine(int rotorOrder, String rotorSetting, String plugboard) {
+		if (!rotorOrderIsLegal(rotorOrder)) {
+			throw new IllegalArgumentException("illegal rotor order: " + rotorOrder);
+		}
+		if (!rotorSettingIsLegal(rotorSetting)) {
+			throw new IllegalArgumentException("illegal rotor setting: " + rotorSetting);
+		}
+		plugboardSetting = normalizePlugboard(plugboard);
+		if (plugboardSetting == null) {
+			throw new IllegalArgumentException("illegal plugboard: " + plugboard);
+		}
+		this.rotorOrder = rotorOrder;
+		this.rotorSetting = rotorSetting.toUpperCase(Locale.ROOT);
+		int fastInt = rotorOrder % 10;
+		int medInt = (rotorOrder / 10) % 10;
+		int slowInt = rotorOrder / 100;
+		byte[] plugs = buildPlugboard(plugboardSetting);
+		if (plugboardSetting.length() > 0) {
+			fastForward = plugInto(FORWARD_TABLES[fastInt - 1], plugs);
+			fastInverse = plugOutOf(INVERSE_TABLES[fastInt - 1], plugs);
+		} else {
+			fastForward = FORWARD_TABLES[fastInt - 1];
+			fastInverse = INVERSE_TABLES[fastInt - 1];
+		}
+		mediumForward = FORWARD_TABLES[medInt - 1];
+		mediumInverse = INVERSE_TABLES[medInt - 1];
+		slowForward = FORWARD_TABLES[slowInt - 1];
+		slowInverse = INVERSE_TABLES[slowInt - 1];
+	}
+
+	/**
+	 * Creates a new model that encrypts with this machine, with its rotors
+	 * at the starting setting.  The model shares this machine's tables, so
+	 * making one costs about as much as making a small array.
+	 *
+	 * @return A new model at the starting setting
+	 */
+
+	public EnigmaModel newModel() {
+		return new EnigmaModel(this);
+	}
+
+	/**
+	 * Encrypts a string from the starting setting.  Each call uses its own
+	 * model, so this can be called from many threads at once.
+	 *
+	 * @param plaintext The input plaintext string
+	 * @return The output ciphertext string
+	 */
+
+	public String encrypt(String plaintext) {
+		return newModel().encrypt(plaintext);
+	}
+
+	/**
+	 * Gets the rotor order of this machine.
+	 *
+	 * @return The three-digit rotor order
+	 */
+
+	public int getRotorOrder() {
+		return rotorOrder;
+	}
+
+	/**
+	 * Gets the starting rotor setting of this machine.
+	 *
+	 * @return The starting rotor setting
+	 */
+
+	public String getRotorSetting() {
+		return rotorSetting;
+	}
+
+	/**
+	 * Gets the plugboard pairs, written as uppercase pairs separated by
+	 * spaces.
+	 *
+	 * @return The plugboard setting
+	 */
+
+	public String getPlugboard() {
+		return plugboardSetting;
+	}
+
+	/**
+	 * Checks whether a rotor order is three different digits from 1 to 5.
+	 *
+	 * @param order A three-digit integer specifying the rotor order
+	 * @return A Boolean value indicating whether the rotor order is legal
+	 */
+
+	public static boolean rotorOrderIsLegal(int order) {
+		int fastInt = order % 10;
+		order /= 10;
+		int medInt = order % 10;
+		order /= 10;
+		int slowInt = order;
+		if (fastInt == medInt || fastInt == slowInt || medInt == slowInt){
+			return false;
+		}
+		if (fastInt <= 5 && fastInt >= 1 && medInt <= 5 && medInt >= 1 && slowInt <= 5 && slowInt >= 1){
+			return true;
+		} else return false;
+	}
+
+	/*Method: legalRotorOrders()*/
+	/*
+	 * returns every three digit rotor order that rotorOrderIsLegal() accepts,
+	 * which is the 60 orderings of three different rotors out of five
+	 */
+	static int[] legalRotorOrders() {
+		int[] orders = new int[60];
+		int count = 0;
+		for (int order = 123; order <= 543; order++) {
+			if (rotorOrderIsLegal(order)) orders[count++] = order;
+		}
+		return orders;
+	}
+
+	/**
+	 * Checks whether a rotor setting is three letters from A to Z, in
+	 * either case.
+	 *
+	 * @param setting The rotor setting
+	 * @return A Boolean value indicating whether the rotor setting is legal
+	 */
+
+	public static boolean rotorSettingIsLegal(String setting) {
+		if(setting.length() != 3) {
+			return false;
+		}
+		for (int i = 0; i < 3; i ++) {
+			char ch = Character.toUpperCase(setting.charAt(i));
+			if (ch < 'A' || ch > 'Z') return false;
+		}
+		return true;
+	}
+
+	/* Package-private methods */
+
+	/*Method: stockRotor()*/
+	/*
+	 * returns the wiring string of one of the five stock rotors, numbered
+	 * 1 to 5, so that EnigmaDefinition can describe the stock machine
+	 */
+	static String stockRotor(int number) {
+		return STOCK_ROTORS[number - 1];
+	}
+
+	/*Method: stockReflector()*/
+	/*
+	 * returns the wiring string of the stock reflector
+	 */
+	static String stockReflector() {
+		return REFLECTOR;
+	}
+
+	/*Method: normalizePlugboard()*/
+	/*
+	 * checks a plugboard string and returns it as uppercase pairs 
+	 * separated by spaces, or null if it has an odd number of letters,
+	 * more than 13 pairs, or uses a letter more than once
+	 */
+	static String normalizePlugboard(String pairs) {
+		pairs = pairs.toUpperCase(Locale.ROOT);
+		String result = "";
+		int used = 0;
+		int count = 0;
+		for (int i = 0; i < pairs.length(); i++) {
+			char ch = pairs.charAt(i);
+			if (ch < 'A' || ch > 'Z') continue;
+			int bit = 1 << (ch - 'A');
+			if ((used & bit) != 0) return null;
+			used |= bit;
+			if (count > 0 && count % 2 == 0) result += ' ';
+			result += ch;
+			count++;
+		}
+		if (count % 2 != 0) return null;
+		return result;
+	}
+
+	/*Method: getPeriodTable()*/
+	/*
+	 * returns the table with the substitution at every rotor position for
+	 * this machine's rotor order and plugboard, taking it from the cache
+	 * if it has been built before. The cache forgets the least recently
+	 * used table once it is full.
+	 */
+	byte[] getPeriodTable() {
+		String key = rotorOrder + " " + plugboardSetting;
+		synchronized (PERIOD_TABLE_CACHE) {
+			byte[] table = PERIOD_TABLE_CACHE.get(key);
+			if (table == null) {
+				table = buildPeriodTable();
+				PERIOD_TABLE_CACHE.put(key, table);
+			}
+			return table;
+		}
+	}
+
+	/*Method: buildPeriodTable()*/
+	/*
+	 * builds the substitution table for this machine by setting a model 
+	 * to each rotor position in turn and encrypting all 26 letters there.
+	 * Entry position * 26 + letter is the encrypted letter. A search over
+	 * every rotor order can call this directly so that it doesn't push 
+	 * everything else out of the cache.
+	 */
+	byte[] buildPeriodTable() {
+		EnigmaModel model = newModel();
+		byte[] table = new byte[PERIOD * 26];
+		for (int position = 0; position < PERIOD; position++) {
+			model.setRotorPosition(position);
+			for (int letter = 0; letter < 26; letter++) {
+				table[position * 26 + letter] = (byte) model.getEncryptedLetter(letter);
+			}
+		}
+		return table;
+	}
+
+	/* Private methods */
+
+	/*Method: buildPlugboard()*/
+	/*
+	 * returns the substitution for a normalized plugboard string, where
+	 * every plugged letter maps to its partner and every other letter 
+	 * maps to itself
+	 */
+	private static byte[] buildPlugboard(String setting) {
+		byte[] table = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			table[i] = (byte) i;
+		}
+		for (int i = 0; i + 1 < setting.length(); i += 3) {
+			int a = setting.charAt(i) - 'A';
+			int b = setting.charAt(i + 1) - 'A';
+			table[a] = (byte) b;
+			table[b] = (byte) a;
+		}
+		return table;
+	}
+
+	/*Method: plugInto()*/
+	/*
+	 * returns a copy of a forward rotor table that sends each letter 
+	 * through the plugboard before the rotor. The fast rotor is the first
+	 * and last stage a letter goes through, so folding the plugboard into
+	 * its tables means the plugs cost nothing extra per letter.
+	 */
+	private static byte[] plugInto(byte[] table, byte[] plugs) {
+		byte[] result = new byte[table.length];
+		for (int pos = 0; pos < 26; pos++) {
+			for (int i = 0; i < 26; i++) {
+				result[pos * 26 + i] = table[pos * 26 + plugs[i]];
+			}
+		}
+		return result;
+	}
+
+	/*Method: plugOutOf()*/
+	/*
+	 * returns a copy of an inverse rotor table that sends each letter
+	 * through the plugboard after the rotor
+	 */
+	private static byte[] plugOutOf(byte[] table, byte[] plugs) {
+		byte[] result = new byte[table.length];
+		for (int i = 0; i < table.length; i++) {
+			result[i] = plugs[table[i]];
+		}
+		return result;
+	}
+
+	/*Method: buildForwardTable()*/
+	/*
+	 * builds a table of 26 * 26 entries for a rotor string where the 
+	 * entry at position * 26 + letter is where the letter goes when the
+	 * rotor has been advanced position times. Advancing shifts the 
+	 * permutation one place to the left and moves every letter back by
+	 * one, so both shifts are applied here once instead of per letter
+	 */
+	private static byte[] buildForwardTable(String rotor) {
+		byte[] table = new byte[26 * 26];
+		for (int pos = 0; pos < 26; pos++) {
+			for (int i = 0; i < 26; i++) {
+				int out = rotor.charAt((i + pos) % 26) - 'A';
+				table[pos * 26 + i] = (byte)((out - pos + 26) % 26);
+			}
+		}
+		return table;
+	}
+
+	/*Method: buildInverseTable()*/
+	/*
+	 * builds the table that undoes buildForwardTable() for every rotor
+	 * position so the signal coming back from the reflector is also a 
+	 * single lookup
+	 */
+	private static byte[] buildInverseTable(String rotor) {
+		byte[] forward = buildForwardTable(rotor);
+		byte[] table = new byte[26 * 26];
+		for (int pos = 0; pos < 26; pos++) {
+			for (int i = 0; i < 26; i++) {
+				table[pos * 26 + forward[pos * 26 + i]] = (byte) i;
+			}
+		}
+		return table;
+	}
+
+	/* Compiled tables, shared with the models using this machine */
+	final byte[] fastForward; //the forward table for the fast rotor, with the plugboard
+	final byte[] fastInverse; //the inverse table for the fast rotor, with the plugboard
+	final byte[] mediumForward; //the forward table for the medium rotor
+	final byte[] mediumInverse; //the inverse table for the medium rotor
+	final byte[] slowForward; //the forward table for the slow rotor
+	final byte[] slowInverse; //the inverse table for the slow rotor
+
+	/* Private instance variables */
+	private final int rotorOrder; //three digit rotor order integer
+	private final String rotorSetting; //the starting rotor setting
+	private final String plugboardSetting; //the plugboard pairs, or "" for no plugs
+
+	/* Constants */
+
+	/*
+	 * The number of different rotor positions before the machine repeats,
+	 * shared by every class that steps through or tabulates them
+	 */
+	static final int PERIOD = 26 * 26 * 26;
+
+	/* Private constants */
+
+	/* The number of precomputed rotor order tables kept in the cache */
+	private static final int PERIOD_TABLE_CACHE_SIZE = 8;
+
+	/*
+	 * The cache of precomputed tables, keyed by rotor order and plugboard.
+	 * The map keeps its entries in order of use so the oldest one can be
+	 * dropped.
+	 */
+	private static final Map<String, byte[]> PERIOD_TABLE_CACHE =
+		new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > PERIOD_TABLE_CACHE_SIZE;
+			}
+		};
+
+	/**
+	 * The German Enigma machines were supplied with a stock of five rotors,
+	 * although the required part of the assignment uses only the first three.
+	 * Each rotor is represented by a string of 26 letters that shows how the
+	 * letters in the alphabet are mapped to new letters as the current in the
+	 * Enigma machine flows across the rotor from right to left.  For example,
+	 * the STOCK_ROTOR_1 string ("EKMFLGDQVZNTOWYHXUSPAIBRCJ") indicates the
+	 * following mapping when it is in its initial position:
+	 *
+	 *    A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
+	 *    | | | | | | | | | | | | | | | | | | | | | | | | | |
+	 *    E K M F L G D Q V Z N T O W Y H X U S P A I B R C J
+	 *
+	 * As the rotor advances, the permutation shifts by one position.  For
+	 * example, after this rotor advances, the bottom line of this transformation
+	 * is shifted one position to the left, with the E wrapping around to the
+	 * other side, as follows:
+	 *
+	 *    A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
+	 *    | | | | | | | | | | | | | | | | | | | | | | | | | |
+	 *    K M F L G D Q V Z N T O W Y H X U S P A I B R C J E
+	 *
+	 * Whenever the rotor setting advances past Z, the next rotor advances
+	 * one position.
+	 */
+
+	private static final String STOCK_ROTOR_1 = "EKMFLGDQVZNTOWYHXUSPAIBRCJ";
+	private static final String STOCK_ROTOR_2 = "AJDKSIRUXBLHWTMCQGZNPYFVOE";
+	private static final String STOCK_ROTOR_3 = "BDFHJLCPRTXVZNYEIWGAKMUSQO";
+	private static final String STOCK_ROTOR_4 = "ESOVPZJAYQUIRHXLNFTGKDCMWB";
+	private static final String STOCK_ROTOR_5 = "VZBRGITYUPSDNHLXAWMJQOFECK";
+
+	/*
+	 * The Enigma reflector is also a 26-character string that works just like
+	 * the rotors except for the fact that it stays in one position and never
+	 * advances.  The reflector setting of "IXUHFEZDAOMTKQJWNSRLCYPBVG"
+	 * therefore means that a signal coming into the reflector on the wire
+	 * shown at the top of the following translation table will go out again
+	 * on the letter at the bottom:
+	 *
+	 *    A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
+	 *    | | | | | | | | | | | | | | | | | | | | | | | | | |
+	 *    I X U H F E Z D A O M T K Q J W N S R L C Y P B V G
+	 *
+	 * Note that the reflector is symmetric.  If A is transformed to I, then
+	 * I is transformed to A.
+	 */
+
+	private static final String REFLECTOR = "IXUHFEZDAOMTKQJWNSRLCYPBVG";
+
+	/*
+	 * The stock rotors and the reflector compiled into lookup tables. These
+	 * are built once when the class is loaded and shared by every machine.
+	 */
+
+	private static final String[] STOCK_ROTORS = {
+		STOCK_ROTOR_1, STOCK_ROTOR_2, STOCK_ROTOR_3, STOCK_ROTOR_4, STOCK_ROTOR_5
+	};
+	private static final byte[][] FORWARD_TABLES = new byte[5][];
+	private static final byte[][] INVERSE_TABLES = new byte[5][];
+	static final byte[] REFLECTOR_TABLE = new byte[26];
+
+	static {
+		for (int i = 0; i < 5; i++) {
+			FORWARD_TABLES[i] = buildForwardTable(STOCK_ROTORS[i]);
+			INVERSE_TABLES[i] = buildInverseTable(STOCK_ROTORS[i]);
+		}
+		for (int i = 0; i < 26; i++) {
+			REFLECTOR_TABLE[i] = (byte)(REFLECTOR.charAt(i) - 'A');
+		}
+	}
+
+}
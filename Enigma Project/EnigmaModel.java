@@ -6,9 +6,17 @@
  * as a chain of substitution ciphers, along with a reflector panel. Also
  * every time a key is pressed the first rotor rotates, and then every
  * 26 times that rotates the second one does and so on, further changing 
- * the cipher for each letter
+ * the cipher for each letter. An optional plugboard swaps pairs of
+ * letters on the way into and out of the rotors. The rotors and plugs
+ * come from an EnigmaMachine, which never changes and can be shared, so
+ * a model is just the rotor positions for one message on that machine.
  */
 
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+
 public class EnigmaModel {
 
 	/**
@@ -20,8 +28,19 @@ public class EnigmaModel {
 	 */
 
 	public EnigmaModel() {
-		rotorOrder = 123;
-		rotorSetting = "AAA";
+		this(new EnigmaMachine(123, "AAA", ""));
+	}
+
+	/**
+	 * Creates a new model that encrypts with the rotors and plugs of an
+	 * existing machine, starting from the machine's rotor setting.
+	 *
+	 * @param machine The machine configuration to use
+	 */
+
+	public EnigmaModel(EnigmaMachine machine) {
+		useMachine(machine);
+		setRotorSetting(machine.getRotorSetting());
 	}
 
 	/**
@@ -31,17 +50,18 @@ public class EnigmaModel {
 	 * rotor 5 as the slow rotor, stock rotor 1 as the medium rotor, and
 	 * stock rotor 3 as the fast rotor.  This method returns true if the
 	 * argument specifies a legal rotor order (three digits in the range
-	 * 1 to 5 with no duplication) and false otherwise.
+	 * 1 to 5 with no duplication) and false otherwise.  An illegal order
+	 * leaves the previous rotor order in place.
 	 *
 	 * @param order A three-digit integer specifying the rotor order
 	 * @return A Boolean value indicating whether the rotor order is legal
 	 */
 
 	public boolean setRotorOrder(int order) {
-		rotorOrder = order;
-		if (rotorOrderIsLegal()) {
+		if (EnigmaMachine.rotorOrderIsLegal(order)) {
+			useMachine(new EnigmaMachine(order, getRotorSetting(), machine.getPlugboard()));
 			return true;
-		} else return false;   
+		} else return false;
 	}
 
 	/**
@@ -54,13 +74,58 @@ public class EnigmaModel {
 	 */
 
 	public boolean setRotorSetting(String setting) {
-		setting = setting.toUpperCase();
-		if (rotorSettingIsLegal(setting)) {
-			rotorSetting = setting;
+		setting = setting.toUpperCase(Locale.ROOT);
+		if (EnigmaMachine.rotorSettingIsLegal(setting)) {
+			slowPos = setting.charAt(0) - 'A';
+			medPos = setting.charAt(1) - 'A';
+			fastPos = setting.charAt(2) - 'A';
+			middleEpoch++;
 			return true;
 		} else return false;
 	}
 
+	/**
+	 * Sets up the plugboard, which swaps pairs of letters before they go
+	 * into the fast rotor and again after they come back out.  The plugs
+	 * are given as pairs of letters such as "AQ EP LZ", with anything
+	 * that isn't a letter ignored.  There can be at most 13 pairs, and no
+	 * letter can be used twice.  An empty string removes all the plugs.
+	 * The plugboard is folded into the fast rotor's tables here, so the
+	 * plugs cost nothing extra when encrypting.  This method returns true
+	 * if the plugs are legal and false otherwise, in which case the
+	 * plugboard is left as it was.
+	 *
+	 * @param pairs The pairs of letters to swap
+	 * @return A Boolean value indicating whether the plugboard is legal
+	 */
+
+	public boolean setPlugboard(String pairs) {
+		if (EnigmaMachine.normalizePlugboard(pairs) == null) return false;
+		useMachine(new EnigmaMachine(machine.getRotorOrder(), getRotorSetting(), pairs));
+		return true;
+	}
+
+	/**
+	 * Gets the current plugboard pairs, written as uppercase pairs
+	 * separated by spaces.
+	 *
+	 * @return The current plugboard setting
+	 */
+
+	public String getPlugboard() {
+		return machine.getPlugboard();
+	}
+
+	/**
+	 * Gets the machine configuration this model is encrypting with.
+	 *
+	 * @return The machine configuration
+	 */
+
+	public EnigmaMachine getMachine() {
+		return machine;
+	}
+
 	/**
 	 * Gets the current rotor setting for the Enigma machine.
 	 *
@@ -68,7 +133,11 @@ public class EnigmaModel {
 	 */
 
 	public String getRotorSetting() {
-		return rotorSetting; 
+		char[] setting = new char[3];
+		setting[0] = (char)('A' + slowPos);
+		setting[1] = (char)('A' + medPos);
+		setting[2] = (char)('A' + fastPos);
+		return new String(setting);
 	}
 
 	/**
@@ -76,280 +145,468 @@ public class EnigmaModel {
 	 * of the Enigma machine.  All letters in the string are converted to
 	 * uppercase, and the rotors of the Enigma machine are advanced before
 	 * translating the letter.  If a character in the plaintext string is
-	 * not a letter, the rotors do not advance and the character is simply
-	 * copied to the output unchanged.
+	 * not a letter from A to Z, the rotors do not advance and the character
+	 * is simply copied to the output in uppercase, so accented letters
+	 * pass through rather than being encrypted.
 	 *
 	 * @param plaintext The input plaintext string
 	 * @return The output ciphertext string
 	 */
 
 	public String encrypt(String plaintext) {
-		String result = "";
-		initRotors();
-		plaintext = plaintext.toUpperCase();
-		for(int i = 0; i < plaintext.length(); i++) {
-			char ch = plaintext.charAt(i);
-			if (Character.isLetter(ch)) {
-				rotorTurning();
-				ch = getEncryptedLetter(ch);
-			}
-			result += ch;
+		char[] result = plaintext.toCharArray();
+		encrypt(result, 0, result.length);
+		return new String(result);
+	}
+
+	/**
+	 * Presses a single key on the machine and returns the letter that
+	 * lights up on the lampboard.  A letter turns the rotors and is
+	 * encrypted, exactly as it would be in the middle of encrypt(String).
+	 * Any other key is returned in uppercase without turning the rotors.
+	 * This takes the same small amount of time for every key and
+	 * allocates nothing, so it can be called on every keystroke.
+	 *
+	 * @param key The key that was pressed
+	 * @return The letter on the lampboard
+	 */
+
+	public char pressKey(char key) {
+		return encryptChar(key);
+	}
+
+	/**
+	 * Encrypts a string in the same way as encrypt(String), but splits a
+	 * long message into chunks that are encrypted at the same time on the
+	 * common fork/join pool.  The rotor position at the start of each chunk
+	 * is found from the number of letters that come before it, so the
+	 * result is identical to the sequential version and the machine ends
+	 * up at the same setting.
+	 *
+	 * @param plaintext The input plaintext string
+	 * @return The output ciphertext string
+	 */
+
+	public String encryptParallel(String plaintext) {
+		char[] result = plaintext.toCharArray();
+		int chunks = (result.length + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		int[] startPositions = new int[chunks];
+		int position = getRotorPosition();
+		for (int i = 0; i < chunks; i++) {
+			startPositions[i] = position;
+			int end = Math.min(result.length, (i + 1) * PARALLEL_CHUNK_SIZE);
+			int letters = countLetters(result, i * PARALLEL_CHUNK_SIZE, end);
+			position = (position + letters) % EnigmaMachine.PERIOD;
 		}
-		return result;
+		if (chunks > 0) {
+			ForkJoinPool.commonPool().invoke(new EncryptChunks(result, startPositions, 0, chunks));
+		}
+		setRotorPosition(position);
+		return new String(result);
 	}
 
-	/* Private methods */
+	/**
+	 * Turns the precomputed mode on or off.  In precomputed mode the model
+	 * uses a table holding the substitution for every one of the 17,576
+	 * rotor positions of the current rotor order, so encrypting a letter
+	 * is a single lookup.  Each table takes about 457 KB and is shared by
+	 * all models using the same rotor order.  The most recently used tables
+	 * are kept in a cache of limited size, so the cost of building a table
+	 * is only paid the first time a rotor order is used.
+	 *
+	 * @param precomputed Whether to use the precomputed tables
+	 */
 
-	/*Method: rotorOrderIsLegal()*/
-	/*
-	 * splits the rotor order integer into three different integers which
-	 * correspond to each rotor, the fast, medium, and slow. It then checks
-	 * to see if it is a legal combination of rotors by checking if there
-	 * are any repeats and if they are all in between 1 and 5. It returns
-	 * true if the conditions are met, false otherwise.
-	 */
-	private boolean rotorOrderIsLegal() {
-		int order = rotorOrder;
-		fastInt = order % 10;
-		order /= 10;
-		medInt = order % 10;
-		order /= 10;
-		slowInt = order;
-		if (fastInt == medInt || fastInt == slowInt || medInt == slowInt){
-			return false;
+	public void setPrecomputed(boolean precomputed) {
+		periodTable = precomputed ? machine.getPeriodTable() : null;
+	}
+
+	/**
+	 * Turns the composite mode on or off.  The medium rotor, slow rotor,
+	 * reflector and the two inverse passes between the fast rotor going
+	 * out and coming back only change when the medium rotor turns, which
+	 * is once every 26 letters.  In composite mode the model remembers what
+	 * those five stages do to each letter until the medium rotor turns
+	 * again, so most letters only cost the fast rotor forward, one lookup
+	 * in the remembered table, and the fast rotor back.  Entries are
+	 * filled in the first time a letter needs them after a turn, so a
+	 * short stretch of text never pays for letters it doesn't use.  The
+	 * precomputed mode, if it is on, takes priority over this one.
+	 *
+	 * @param composite Whether to use the composite table
+	 */
+
+	public void setCompositeMode(boolean composite) {
+		if (composite) {
+			middleTable = new byte[26];
+			middleStamps = new long[26];
+			Arrays.fill(middleStamps, -1);
+		} else {
+			middleTable = null;
+			middleStamps = null;
 		}
-		if (fastInt <= 5 && fastInt >= 1 && medInt <= 5 && medInt >= 1 && slowInt <= 5 && slowInt >= 1){
-			return true;
-		} else return false;
 	}
 
-	/*Method: rotorSettingIsLegal*/
-	/*
-	 * checks to see if the rotor setting given by the user is a legal 
-	 * setting by making sure it only has 3 letters and returns true
-	 * if the conditions are met, false otherwise. 
+	/**
+	 * Returns the current rotor position as a single number between 0 and
+	 * 17575.  The three rotors act like the digits of a base-26 odometer,
+	 * so the position is the slow rotor times 676 plus the medium rotor
+	 * times 26 plus the fast rotor, with A counting as 0.
+	 *
+	 * @return The current rotor position
+	 */
+
+	public int getRotorPosition() {
+		return slowPos * 26 * 26 + medPos * 26 + fastPos;
+	}
+
+	/**
+	 * Moves the rotors directly to a position returned by
+	 * getRotorPosition().
+	 *
+	 * @param position A rotor position between 0 and 17575
 	 */
-	private boolean rotorSettingIsLegal(String setting) {
-		if(setting.length() != 3) {
-			return false;
+
+	public void setRotorPosition(int position) {
+		if (position < 0 || position >= EnigmaMachine.PERIOD) {
+			throw new IllegalArgumentException("rotor position out of range: " + position);
 		}
-		for (int i = 0; i < 3; i ++) {
-			char ch = setting.charAt(i);
-			if (!Character.isLetter(ch)) return false;
+		fastPos = position % 26;
+		medPos = (position / 26) % 26;
+		slowPos = position / (26 * 26);
+		middleEpoch++;
+	}
+
+	/**
+	 * Moves the rotors to where they would be after encrypting the given
+	 * number of letters, without encrypting anything.  Since the rotors
+	 * simply count through every setting, this takes the same time no
+	 * matter how many letters are skipped.
+	 *
+	 * @param letters The number of letters to skip
+	 */
+
+	public void seek(long letters) {
+		int skip = (int)(letters % EnigmaMachine.PERIOD);
+		if (skip < 0) skip += EnigmaMachine.PERIOD;
+		setRotorPosition((getRotorPosition() + skip) % EnigmaMachine.PERIOD);
+	}
+
+	/**
+	 * Encrypts everything that can be read from the reader and writes the
+	 * ciphertext to the writer.  The text is handled one buffer at a time,
+	 * so the message never has to fit in memory.  The rotors keep turning
+	 * from one buffer to the next exactly as if the whole message had been
+	 * passed to encrypt(String), and the machine is left at the setting
+	 * after the last letter.  The writer is flushed but not closed.
+	 *
+	 * @param in The source of the plaintext
+	 * @param out The destination for the ciphertext
+	 * @throws IOException If reading or writing fails
+	 */
+
+	public void encrypt(Reader in, Writer out) throws IOException {
+		char[] buffer = new char[STREAM_BUFFER_SIZE];
+		int count = in.read(buffer);
+		while (count != -1) {
+			encrypt(buffer, 0, count);
+			out.write(buffer, 0, count);
+			count = in.read(buffer);
 		}
-		return true;
+		out.flush();
 	}
 
-	/*Method: initRotors()*/
-	/*
-	 * sets the rotors up to their initial values by first getting the 
-	 * integer for each rotor and using a method to match it with the 
-	 * specific stock rotor. Then it uses the rotorSetting string to get
-	 * the character value for each rotor and then advances the rotor the
-	 * appropriate number of times for that character
-	 */
-	private void initRotors() {
-		fastRotor = getKey(fastInt);
-		mediumRotor = getKey(medInt);
-		slowRotor = getKey(slowInt);
-		for(int i = 0; i < (int)(rotorSetting.charAt(2) - 'A'); i++) {
-			fastRotor = advanceRotor(fastRotor);
+	/**
+	 * Encrypts as many characters from the input buffer as fit into the
+	 * output buffer.  Both buffers are advanced past the characters that
+	 * were handled, so calling this again with the next piece of input
+	 * continues the message where it left off.
+	 *
+	 * @param in The buffer holding the plaintext
+	 * @param out The buffer that receives the ciphertext
+	 * @return The number of characters encrypted
+	 */
+
+	public int encrypt(CharBuffer in, CharBuffer out) {
+		int count = Math.min(in.remaining(), out.remaining());
+		for (int i = 0; i < count; i++) {
+			out.put(encryptChar(in.get()));
 		}
-		for(int i = 0; i < (int)(rotorSetting.charAt(1) - 'A'); i++) {
-			mediumRotor = advanceRotor(mediumRotor);
+		return count;
+	}
+
+	/**
+	 * Encrypts a range of a character array in place.
+	 *
+	 * @param text The characters to encrypt
+	 * @param offset The index of the first character
+	 * @param length The number of characters to encrypt
+	 */
+
+	public void encrypt(char[] text, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			text[i] = encryptChar(text[i]);
 		}
-		for(int i = 0; i < (int)(rotorSetting.charAt(0) - 'A'); i++) {
-			slowRotor = advanceRotor(slowRotor);
+	}
+
+	/**
+	 * Encrypts a range of ASCII bytes in place.  Lowercase letters are
+	 * converted to uppercase before they are encrypted, and every other
+	 * byte is left unchanged and does not turn the rotors.  Bytes from
+	 * 128 up, such as the pieces of a UTF-8 character, count as
+	 * non-letters, so text that isn't ASCII passes through safely.
+	 *
+	 * @param text The ASCII bytes to encrypt
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes to encrypt
+	 */
+
+	public void encrypt(byte[] text, int offset, int length) {
+		encrypt(text, offset, text, offset, length);
+	}
+
+	/**
+	 * Encrypts a range of ASCII bytes from one array into another, in the
+	 * same way as encrypt(byte[], int, int).  Letters are found and
+	 * converted to uppercase with a single lookup in a 256-entry table,
+	 * with no Unicode checks and no copy of the input.
+	 *
+	 * @param in The ASCII bytes to encrypt
+	 * @param inOffset The index of the first byte to read
+	 * @param out The array that receives the encrypted bytes
+	 * @param outOffset The index of the first byte to write
+	 * @param length The number of bytes to encrypt
+	 */
+
+	public void encrypt(byte[] in, int inOffset, byte[] out, int outOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			byte ch = in[inOffset + i];
+			int letter = LETTER_INDEX[ch & 0xFF];
+			out[outOffset + i] = letter < 0 ? ch : (byte)('A' + encryptLetter(letter));
 		}
 	}
 
-	/*Method: getKey()*/
+	/**
+	 * Encrypts an array of ASCII bytes and returns the result in a new
+	 * array, leaving the input as it was.
+	 *
+	 * @param text The ASCII bytes to encrypt
+	 * @return The encrypted bytes
+	 */
+
+	public byte[] encrypt(byte[] text) {
+		byte[] result = new byte[text.length];
+		encrypt(text, 0, result, 0, text.length);
+		return result;
+	}
+
+	/* Private methods */
+
+	/*Method: useMachine()*/
 	/*
-	 * returns the correct stock rotor string by using the value of the 
-	 * rotor integer in a switch statement.
-	 */
-	private String getKey(int i) {
-		switch (i) {
-		case 1: return STOCK_ROTOR_1;
-		case 2: return STOCK_ROTOR_2;
-		case 3: return STOCK_ROTOR_3;
-		case 4: return STOCK_ROTOR_4;
-		case 5: return STOCK_ROTOR_5;
-		default: return null;
-		}
+	 * switches the model over to a machine configuration, keeping the
+	 * machine's tables in fields of the model so that encrypting a letter
+	 * doesn't have to go through the machine each time
+	 */
+	private void useMachine(EnigmaMachine newMachine) {
+		machine = newMachine;
+		fastForward = machine.fastForward;
+		fastInverse = machine.fastInverse;
+		mediumForward = machine.mediumForward;
+		mediumInverse = machine.mediumInverse;
+		slowForward = machine.slowForward;
+		slowInverse = machine.slowInverse;
+		if (periodTable != null) periodTable = machine.getPeriodTable();
+		middleEpoch++;
 	}
 
-	/*Method: advanceRotor()*/
+	/*Method: countLetters()*/
 	/*
-	 * returns a string of a rotor advanced forward by one turn by first
-	 * taking the first letter off the front and adding it on the back 
-	 * and then missing the value of each letter by one to make it the 
-	 * letter before it in the alphabet
-	 */
-	private String advanceRotor(String rotor) {
-		String firstResult = "";
-		char last = rotor.charAt(0);
-		for(int i = 1; i < rotor.length(); i ++) {
-			char ch = rotor.charAt(i);
-			firstResult += ch;
-		}
-		firstResult += last;
-		String finalResult = "";
-		for(int i = 0; i < firstResult.length(); i ++) {
-			char ch = firstResult.charAt(i);
-			if (ch == 'A') {
-				finalResult += (char)('Z');
-			} else finalResult += (char)(ch - 1);
+	 * counts how many characters in part of an array will turn the rotors
+	 * when encrypted by encryptChar()
+	 */
+	private static int countLetters(char[] text, int start, int end) {
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			char ch = text[i];
+			if (ch < 256 && LETTER_INDEX[ch] >= 0) count++;
 		}
-		return finalResult;
+		return count;
 	}
 
-	/*Method: setSpecificRotor*/
+	/*Method: copyAt()*/
 	/*
-	 * takes the current string of rotor setting and changes one of the 
-	 * settings to coincide with the specific rotor and character it 
-	 * needs to set it to. It then returns the new setting. Useful for 
-	 * keeping track of the overall setting
-	 */
-	private String setSpecificRotor(int rotor, char letter) {
-		String result = "";
-		for(int i = 0; i < 3; i++) {
-			char ch = rotorSetting.charAt(i);
-			if( i == rotor) {
-				ch = letter;
-			}
-			result += ch;
+	 * returns a new model with the same rotors as this one, set to the
+	 * given rotor position, so that a piece of a message can be encrypted
+	 * without touching this model's rotors
+	 */
+	private EnigmaModel copyAt(int position) {
+		EnigmaModel copy = new EnigmaModel(machine);
+		copy.periodTable = periodTable;
+		copy.setCompositeMode(middleTable != null);
+		copy.setRotorPosition(position);
+		return copy;
+	}
+
+	/*Method: encryptLetter()*/
+	/*
+	 * turns the rotors and returns the encrypted value of a letter (0 for
+	 * A through 25 for Z), using the precomputed table for the rotor
+	 * order if there is one and the rotor tables otherwise
+	 */
+	private int encryptLetter(int letter) {
+		rotorTurning();
+		if (periodTable != null) {
+			return periodTable[(slowPos * 26 * 26 + medPos * 26 + fastPos) * 26 + letter];
 		}
-		return result;
+		if (middleTable != null) return getCompositeLetter(letter);
+		return getEncryptedLetter(letter);
+	}
+
+	/*Method: encryptChar()*/
+	/*
+	 * encrypts a single character if it is a letter from A to Z in either
+	 * case, turning the rotors first. Any other character is returned in
+	 * uppercase without turning the rotors. Character.toUpperCase() works
+	 * on one character and ignores the locale, unlike String.toUpperCase().
+	 */
+	private char encryptChar(char ch) {
+		int letter = ch < 256 ? LETTER_INDEX[ch] : -1;
+		if (letter < 0) return Character.toUpperCase(ch);
+		return (char)('A' + encryptLetter(letter));
 	}
 
 	/*Method: rotorTurning()*/
 	/*
 	 * goes through the turning of the rotors each time a letter is 
-	 * pressed. It resets the rotorSetting string in order to keep track
-	 * of the current rotor settings and it checks to see if the rotor 
-	 * about to be turned is on Z so that it knows to reset that rotor to
-	 * A and subsequently turn the next rotor.
+	 * pressed. It checks to see if the rotor about to be turned is on Z
+	 * so that it knows to reset that rotor to A and subsequently turn 
+	 * the next rotor.
 	 */
 	private void rotorTurning() {
-		if(rotorSetting.charAt(2) == 'Z') {
-			fastRotor = getKey(fastInt);
-			rotorSetting = setSpecificRotor(2, 'A');
-			if(rotorSetting.charAt(1) == 'Z') {
-				mediumRotor = getKey(medInt);
-				rotorSetting = setSpecificRotor(1, 'A');
-				if(rotorSetting.charAt(0) == 'Z') {
-					slowRotor = getKey(slowInt);
-					rotorSetting = setSpecificRotor(0, 'A');
-				} else {
-					slowRotor = advanceRotor(slowRotor);
-					rotorSetting = setSpecificRotor(0, (char)(rotorSetting.charAt(0) + 1));
-				}
-			} else {
-				mediumRotor = advanceRotor(mediumRotor);
-				rotorSetting = setSpecificRotor(1, (char)(rotorSetting.charAt(1) + 1));
-			}
-		} else {
-			fastRotor = advanceRotor(fastRotor);
-			rotorSetting = setSpecificRotor(2, (char)(rotorSetting.charAt(2) + 1));
+		if(fastPos == 25) {
+			fastPos = 0;
+			middleEpoch++;
+			if(medPos == 25) {
+				medPos = 0;
+				if(slowPos == 25) {
+					slowPos = 0;
+				} else slowPos++;
+			} else medPos++;
+		} else fastPos++;
+	}
+
+	/*Method: getCompositeLetter()*/
+	/*
+	 * returns the encrypted value of a letter in composite mode. The path
+	 * through the medium rotor, slow rotor, reflector and back is looked
+	 * up in middleTable, and worked out and saved there first if it was 
+	 * last filled in before the medium rotor turned.
+	 */
+	private int getCompositeLetter(int letter) {
+		letter = fastForward[fastPos * 26 + letter];
+		if (middleStamps[letter] != middleEpoch) {
+			int middle = mediumForward[medPos * 26 + letter];
+			middle = slowForward[slowPos * 26 + middle];
+			middle = EnigmaMachine.REFLECTOR_TABLE[middle];
+			middle = slowInverse[slowPos * 26 + middle];
+			middle = mediumInverse[medPos * 26 + middle];
+			middleTable[letter] = (byte) middle;
+			middleStamps[letter] = middleEpoch;
 		}
+		return fastInverse[fastPos * 26 + middleTable[letter]];
 	}
 
 	/*Method: getEncryptedLetter()*/
 	/*
-	 * returns the encrypted value of a letter by taking it and passing 
-	 * it through each rotor, the reflector panel, and the each inverted
-	 * rotor in reverse order, thereby returning the correctly ciphered 
-	 * letter
-	 */
-	private char getEncryptedLetter(char ch) {
-		ch = fastRotor.charAt(ch - 'A');
-		ch = mediumRotor.charAt(ch - 'A');
-		ch = slowRotor.charAt(ch - 'A');
-		ch = REFLECTOR.charAt(ch - 'A');
-		ch = invertRotor(slowRotor).charAt(ch - 'A');
-		ch = invertRotor(mediumRotor).charAt(ch - 'A');
-		ch = invertRotor(fastRotor).charAt(ch - 'A');
-		return ch;
-	}
-	
-	/*Method: invertRotor()*/
+	 * returns the encrypted value of a letter (0 for A through 25 for Z)
+	 * by taking it and passing it through each rotor, the reflector 
+	 * panel, and the each inverted rotor in reverse order, thereby 
+	 * returning the correctly ciphered letter. Each step is one lookup
+	 * in a precomputed table, and any plugs are already part of the fast
+	 * rotor's tables. Package-private so EnigmaMachine can use it to 
+	 * build its full-period table.
+	 */
+	int getEncryptedLetter(int letter) {
+		letter = fastForward[fastPos * 26 + letter];
+		letter = mediumForward[medPos * 26 + letter];
+		letter = slowForward[slowPos * 26 + letter];
+		letter = EnigmaMachine.REFLECTOR_TABLE[letter];
+		letter = slowInverse[slowPos * 26 + letter];
+		letter = mediumInverse[medPos * 26 + letter];
+		letter = fastInverse[fastPos * 26 + letter];
+		return letter;
+	}
+
 	/*
-	 * returns the inverted key value of an entered rotor by going 
-	 * through each letter, finding its position on the line, then making
-	 * a new rotor with the distance added onto A for each character, 
-	 * thereby inverted the string.
-	 */
-	private String invertRotor(String rotor) {
-		String invertedRotor = "";
-		for(int i = 0; i < 26; i++) {
-			int distance = rotor.indexOf('A' + i);
-			invertedRotor += (char)('A' + distance);
+	 * Encrypts a range of chunks of a message. Large ranges are split in
+	 * half so the fork/join pool can spread them over all the cores, and
+	 * each chunk is encrypted with its own copy of the model starting at
+	 * the position worked out by encryptParallel().
+	 */
+	private class EncryptChunks extends RecursiveAction {
+
+		public EncryptChunks(char[] text, int[] startPositions, int first, int last) {
+			this.text = text;
+			this.startPositions = startPositions;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if (last - first == 1) {
+				int start = first * PARALLEL_CHUNK_SIZE;
+				int end = Math.min(text.length, start + PARALLEL_CHUNK_SIZE);
+				copyAt(startPositions[first]).encrypt(text, start, end - start);
+			} else {
+				int middle = (first + last) / 2;
+				invokeAll(new EncryptChunks(text, startPositions, first, middle),
+						new EncryptChunks(text, startPositions, middle, last));
+			}
 		}
-		return invertedRotor;
+
+		private char[] text; //the whole message being encrypted
+		private int[] startPositions; //the rotor position before each chunk
+		private int first; //the first chunk in this range
+		private int last; //one past the last chunk in this range
 	}
 
 	/* Private instance variables */
-	private int rotorOrder; //three digit rotor order integer
-	private int fastInt; //the integer of the fast rotor
-	private int medInt; //the integer of the medium rotor
-	private int slowInt; //the integer of the slow rotor
-	private String rotorSetting; //the string with the current setting for the three rotors
-	private String fastRotor; //the string with the current key for the fast rotor
-	private String mediumRotor; //the string with the current key for the medium rotor
-	private String slowRotor; //the string with the current key for the slow rotor
-
+	private EnigmaMachine machine; //the rotor order and plugboard being used
+	private int fastPos; //the current position of the fast rotor, 0 for A
+	private int medPos; //the current position of the medium rotor, 0 for A
+	private int slowPos; //the current position of the slow rotor, 0 for A
+	private byte[] fastForward; //the forward table for the fast rotor
+	private byte[] fastInverse; //the inverse table for the fast rotor
+	private byte[] mediumForward; //the forward table for the medium rotor
+	private byte[] mediumInverse; //the inverse table for the medium rotor
+	private byte[] slowForward; //the forward table for the slow rotor
+	private byte[] slowInverse; //the inverse table for the slow rotor
+	private byte[] periodTable; //the precomputed table for every position, or null
+	private byte[] middleTable; //the composite of the stages past the fast rotor, or null
+	private long[] middleStamps; //the middleEpoch at which each middleTable entry was filled
+	private long middleEpoch; //counts changes to the medium and slow rotors
 
 	/* Private constants */
 
-	/**
-	 * The German Enigma machines were supplied with a stock of five rotors,
-	 * although the required part of the assignment uses only the first three.
-	 * Each rotor is represented by a string of 26 letters that shows how the
-	 * letters in the alphabet are mapped to new letters as the current in the
-	 * Enigma machine flows across the rotor from right to left.  For example,
-	 * the STOCK_ROTOR_1 string ("EKMFLGDQVZNTOWYHXUSPAIBRCJ") indicates the
-	 * following mapping when it is in its initial position:
-	 *
-	 *    A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
-	 *    | | | | | | | | | | | | | | | | | | | | | | | | | |
-	 *    E K M F L G D Q V Z N T O W Y H X U S P A I B R C J
-	 *
-	 * As the rotor advances, the permutation shifts by one position.  For
-	 * example, after this rotor advances, the bottom line of this transformation
-	 * is shifted one position to the left, with the E wrapping around to the
-	 * other side, as follows:
-	 *
-	 *    A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
-	 *    | | | | | | | | | | | | | | | | | | | | | | | | | |
-	 *    K M F L G D Q V Z N T O W Y H X U S P A I B R C J E
-	 *
-	 * Whenever the rotor setting advances past Z, the next rotor advances
-	 * one position.
-	 */
+	/* The number of characters read at a time when encrypting a stream */
+	private static final int STREAM_BUFFER_SIZE = 8192;
 
-	private static final String STOCK_ROTOR_1 = "EKMFLGDQVZNTOWYHXUSPAIBRCJ";
-	private static final String STOCK_ROTOR_2 = "AJDKSIRUXBLHWTMCQGZNPYFVOE";
-	private static final String STOCK_ROTOR_3 = "BDFHJLCPRTXVZNYEIWGAKMUSQO";
-	private static final String STOCK_ROTOR_4 = "ESOVPZJAYQUIRHXLNFTGKDCMWB";
-	private static final String STOCK_ROTOR_5 = "VZBRGITYUPSDNHLXAWMJQOFECK";
+	/* The number of characters in each chunk handled by encryptParallel() */
+	private static final int PARALLEL_CHUNK_SIZE = 1 << 16;
 
 	/*
-	 * The Enigma reflector is also a 26-character string that works just like
-	 * the rotors except for the fact that it stays in one position and never
-	 * advances.  The reflector setting of "IXUHFEZDAOMTKQJWNSRLCYPBVG"
-	 * therefore means that a signal coming into the reflector on the wire
-	 * shown at the top of the following translation table will go out again
-	 * on the letter at the bottom:
-	 *
-	 *    A B C D E F G H I J K L M N O P Q R S T U V W X Y Z
-	 *    | | | | | | | | | | | | | | | | | | | | | | | | | |
-	 *    I X U H F E Z D A O M T K Q J W N S R L C Y P B V G
-	 *
-	 * Note that the reflector is symmetric.  If A is transformed to I, then
-	 * I is transformed to A.
+	 * The letter for each of the 256 byte values, 0 for 'A' or 'a' through
+	 * 25 for 'Z' or 'z', and -1 for everything that isn't an ASCII letter.
 	 */
+	static final byte[] LETTER_INDEX = new byte[256];
 
-	private static final String REFLECTOR = "IXUHFEZDAOMTKQJWNSRLCYPBVG";
+	static {
+		Arrays.fill(LETTER_INDEX, (byte) -1);
+		for (int i = 0; i < 26; i++) {
+			LETTER_INDEX['A' + i] = (byte) i;
+			LETTER_INDEX['a' + i] = (byte) i;
+		}
+	}
 
 }
@@ -0,0 +1,177 @@
+/*
+ * File: EnigmaMultiKeyKernel.java
+ * -------------------------------
+ * This file is a class that scores the same ciphertext under many rotor
+ * settings at once. Rather than decrypting the whole message for one
+ * setting and then starting again for the next, it walks through the
+ * message a letter at a time and decrypts that letter under a whole row
+ * of neighbouring settings (the lanes) before moving on.
+ *
+ * The kernel reads a lane table, which is the full-period table turned
+ * around so that the decryptions of one ciphertext letter at every rotor
+ * position sit next to each other. The lanes for one letter are then a
+ * single contiguous run of bytes, with no gathering and no wrapping at
+ * the end of the period, since each row repeats its first MAX_LANES
+ * entries at the end.
+ *
+ * This class is the plain-Java version, and the one the key search uses
+ * unless EnigmaVectorKernel, in the vector directory, has been compiled
+ * onto the class path and the JVM was started with the
+ * jdk.incubator.vector module. Building that kernel is left as a
+ * separate step on purpose: once warmed up it runs a search in about
+ * two thirds of the time, but the JIT takes most of a search to compile
+ * it, so a single search from a cold start is slower with it than
+ * without.
+ */
+
+import java.lang.reflect.*;
+import java.util.*;
+
+public class EnigmaMultiKeyKernel {
+
+	/**
+	 * Creates a plain-Java kernel that scores the given number of settings
+	 * at once.
+	 *
+	 * @param lanes The number of settings scored together, from 1 to 64
+	 */
+
+	public EnigmaMultiKeyKernel(int lanes) {
+		if (lanes < 1 || lanes > MAX_LANES) {
+			throw new IllegalArgumentException("lanes must be between 1 and " + MAX_LANES);
+		}
+		this.lanes = lanes;
+		counts = new int[lanes * 26];
+	}
+
+	/**
+	 * Creates a kernel for the key search: the Vector API kernel if it has
+	 * been built and the jdk.incubator.vector module is present, and a
+	 * plain-Java one if not.  The Vector API kernel lives in the vector
+	 * directory and is looked up by name, so this file and everything
+	 * else in this directory compile and run without it.
+	 *
+	 * @param lanes The number of settings scored together, from 1 to 64
+	 * @return The kernel
+	 */
+
+	public static EnigmaMultiKeyKernel create(int lanes) {
+		if (VECTOR_KERNEL != null) {
+			try {
+				return VECTOR_KERNEL.newInstance(lanes);
+			} catch (ReflectiveOperationException e) {
+				/* fall through to the plain-Java kernel */
+			}
+		}
+		return new EnigmaMultiKeyKernel(lanes);
+	}
+
+	/**
+	 * Turns a full-period table, as built by EnigmaMachine, into the lane
+	 * table that score() reads.  Row c holds the decryption of ciphertext
+	 * letter c at every rotor position, followed by the first MAX_LANES
+	 * entries again.
+	 *
+	 * @param periodTable The full-period table for a rotor order
+	 * @return The lane table for the same rotor order
+	 */
+
+	public static byte[] laneTable(byte[] periodTable) {
+		byte[] table = new byte[26 * ROW_SIZE];
+		for (int letter = 0; letter < 26; letter++) {
+			int row = letter * ROW_SIZE;
+			for (int position = 0; position < ROW_SIZE; position++) {
+				table[row + position] = periodTable[(position % EnigmaMachine.PERIOD) * 26 + letter];
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Gets the number of settings this kernel scores together.
+	 *
+	 * @return The number of lanes
+	 */
+
+	public int getLanes() {
+		return lanes;
+	}
+
+	/**
+	 * Decrypts the letters under the settings firstPosition,
+	 * firstPosition + 1, and so on for each lane, and stores the sum of
+	 * n * (n - 1) over the letter counts of each decryption in scores.
+	 * The letters are numbers from 0 for A to 25 for Z.  Nothing is
+	 * allocated, so one kernel can be reused for every block of settings.
+	 *
+	 * @param laneTable The lane table for a rotor order, from laneTable()
+	 * @param letters The letters of the ciphertext
+	 * @param firstPosition The starting rotor position of the first lane
+	 * @param scores Receives the score for each lane
+	 */
+
+	public void score(byte[] laneTable, byte[] letters, int firstPosition, long[] scores) {
+		Arrays.fill(counts, 0);
+		int position = firstPosition;
+		for (int i = 0; i < letters.length; i++) {
+			position++;
+			if (position == EnigmaMachine.PERIOD) position = 0;
+			int row = letters[i] * ROW_SIZE + position;
+			for (int lane = 0; lane < lanes; lane++) {
+				counts[lane * 26 + laneTable[row + lane]]++;
+			}
+		}
+		sumScores(scores);
+	}
+
+	/* Package-private methods */
+
+	/*Method: sumScores()*/
+	/*
+	 * turns the letter counts of each lane into its score
+	 */
+	void sumScores(long[] scores) {
+		for (int lane = 0; lane < lanes; lane++) {
+			long sum = 0;
+			for (int letter = lane * 26; letter < lane * 26 + 26; letter++) {
+				sum += (long) counts[letter] * (counts[letter] - 1);
+			}
+			scores[lane] = sum;
+		}
+	}
+
+	/* Private methods */
+
+	/*Method: findVectorKernel()*/
+	/*
+	 * looks up the constructor of the Vector API kernel once. Loading the
+	 * class also sets up its vector species, so if the class wasn't built
+	 * or the incubator module is missing, this fails here and returns null
+	 */
+	private static Constructor<? extends EnigmaMultiKeyKernel> findVectorKernel() {
+		try {
+			return Class.forName("EnigmaVectorKernel").asSubclass(EnigmaMultiKeyKernel.class)
+					.getConstructor(int.class);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/* Shared with EnigmaVectorKernel */
+	final int lanes; //the number of settings scored together
+	final int[] counts; //the letter counts for each lane, 26 per lane
+
+	/* Constants */
+
+	/* The largest number of lanes a kernel can have */
+	static final int MAX_LANES = 64;
+
+	/* The length of each row of a lane table */
+	static final int ROW_SIZE = EnigmaMachine.PERIOD + MAX_LANES;
+
+	/* Private constants */
+
+	/* The Vector API kernel's constructor, or null if it can't be used */
+	private static final Constructor<? extends EnigmaMultiKeyKernel> VECTOR_KERNEL = findVectorKernel();
+
+}
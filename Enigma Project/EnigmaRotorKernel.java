@@ -0,0 +1,282 @@
+/*
+ * File: EnigmaRotorKernel.java
+ * ----------------------------
+ * This file is a class that encrypts with a machine described by an
+ * EnigmaDefinition. It holds only the positions of the rotors; all of the
+ * wiring comes from the definition's compiled tables, so any number of
+ * kernels can share one definition. Each letter steps the rotors, then
+ * goes through one table lookup per rotor on the way in, one for the
+ * reflector (which already has the thin rotor folded into it), and one
+ * per rotor on the way back out.
+ */
+
+import java.util.*;
+
+public class EnigmaRotorKernel {
+
+	/**
+	 * Creates a kernel for a machine at a rotor setting.  Kernels are
+	 * normally made with EnigmaDefinition.newKernel().
+	 *
+	 * @param definition The machine to encrypt with
+	 * @param rotorSetting The starting setting, one letter per rotor,
+	 *        slowest first, with the thin rotor at the front if there is one
+	 * @throws IllegalArgumentException If the setting is the wrong length
+	 */
+
+	public EnigmaRotorKernel(EnigmaDefinition definition, String rotorSetting) {
+		rotorCount = definition.rotorCount;
+		doubleStepping = definition.doubleStepping;
+		forward = definition.forward;
+		inverse = definition.inverse;
+		notchMasks = definition.notchMasks;
+		int letterCount = rotorCount + (definition.hasThinRotor ? 1 : 0);
+		if (rotorSetting.length() != letterCount) {
+			throw new IllegalArgumentException("need one setting letter per rotor: " + rotorSetting);
+		}
+		rotorSetting = rotorSetting.toUpperCase(Locale.ROOT);
+		for (int i = 0; i < letterCount; i++) {
+			char ch = rotorSetting.charAt(i);
+			if (ch < 'A' || ch > 'Z') {
+				throw new IllegalArgumentException("illegal rotor setting: " + rotorSetting);
+			}
+		}
+		positions = new int[rotorCount];
+		offsets = new int[rotorCount];
+		for (int i = 0; i < rotorCount; i++) {
+			positions[i] = rotorSetting.charAt(letterCount - 1 - i) - 'A';
+			offsets[i] = (i * 26 + positions[i]) * 26;
+		}
+		reflector = new byte[26];
+		if (definition.hasThinRotor) {
+			thinLetter = rotorSetting.charAt(0);
+			int thin = (thinLetter - 'A') * 26;
+			for (int i = 0; i < 26; i++) {
+				int letter = definition.thinForward[thin + i];
+				letter = definition.reflectorTable[letter];
+				reflector[i] = definition.thinInverse[thin + letter];
+			}
+		} else {
+			System.arraycopy(definition.reflectorTable, 0, reflector, 0, 26);
+		}
+		quietSteps = countQuietSteps();
+	}
+
+	/**
+	 * Encrypts a string.  Letters in either case step the rotors and come
+	 * out in uppercase; anything else is passed through in uppercase
+	 * without stepping, as EnigmaModel does.
+	 *
+	 * @param plaintext The input plaintext string
+	 * @return The encrypted string
+	 */
+
+	public String encrypt(String plaintext) {
+		char[] result = plaintext.toCharArray();
+		for (int i = 0; i < result.length; i++) {
+			result[i] = pressKey(result[i]);
+		}
+		return new String(result);
+	}
+
+	/**
+	 * Encrypts a range of ASCII bytes in place.  Letters are encrypted to
+	 * uppercase and every other byte is left alone.
+	 *
+	 * @param text The array holding the bytes
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes to encrypt
+	 */
+
+	public void encrypt(byte[] text, int offset, int length) {
+		if (rotorCount == 3) {
+			encryptThreeRotors(text, offset, length);
+			return;
+		}
+		for (int i = offset; i < offset + length; i++) {
+			int letter = EnigmaModel.LETTER_INDEX[text[i] & 0xFF];
+			if (letter >= 0) text[i] = (byte)('A' + encryptLetter(letter));
+		}
+	}
+
+	/**
+	 * Presses a single key and returns the letter that lights up.  Any
+	 * key that isn't a letter is returned in uppercase without stepping
+	 * the rotors.
+	 *
+	 * @param key The key pressed
+	 * @return The lamp that lights up
+	 */
+
+	public char pressKey(char key) {
+		int letter = key < 256 ? EnigmaModel.LETTER_INDEX[key] : -1;
+		if (letter < 0) return Character.toUpperCase(key);
+		return (char)('A' + encryptLetter(letter));
+	}
+
+	/**
+	 * Gets the current rotor setting, written the same way as the setting
+	 * the kernel was made with.
+	 *
+	 * @return The current rotor setting
+	 */
+
+	public String getRotorSetting() {
+		StringBuilder setting = new StringBuilder();
+		if (thinLetter != 0) setting.append(thinLetter);
+		for (int i = rotorCount - 1; i >= 0; i--) {
+			setting.append((char)('A' + positions[i]));
+		}
+		return setting.toString();
+	}
+
+	/* Private methods */
+
+	/*Method: encryptLetter()*/
+	/*
+	 * steps the rotors and sends one letter through the machine. The
+	 * offsets already point at each rotor's table for its position, so
+	 * each rotor is a single lookup in each direction
+	 */
+	private int encryptLetter(int letter) {
+		step();
+		if (rotorCount == 3) {
+			int fast = offsets[0];
+			int middle = offsets[1];
+			int slow = offsets[2];
+			letter = reflector[forward[slow + forward[middle + forward[fast + letter]]]];
+			return inverse[fast + inverse[middle + inverse[slow + letter]]];
+		}
+		for (int i = 0; i < rotorCount; i++) {
+			letter = forward[offsets[i] + letter];
+		}
+		letter = reflector[letter];
+		for (int i = rotorCount - 1; i >= 0; i--) {
+			letter = inverse[offsets[i] + letter];
+		}
+		return letter;
+	}
+
+	/*Method: encryptThreeRotors()*/
+	/*
+	 * encrypts bytes in place for the common three-rotor machine with the
+	 * tables, rotor offsets and quiet steps held in local variables. Only
+	 * the fast rotor is turned here; whenever a notch is reached the
+	 * offsets are stored back and step() does the rest
+	 */
+	private void encryptThreeRotors(byte[] text, int offset, int length) {
+		byte[] forward = this.forward;
+		byte[] inverse = this.inverse;
+		byte[] reflector = this.reflector;
+		byte[] letterIndex = EnigmaModel.LETTER_INDEX;
+		int fast = offsets[0];
+		int middle = offsets[1];
+		int slow = offsets[2];
+		int quiet = quietSteps;
+		for (int i = offset; i < offset + length; i++) {
+			int letter = letterIndex[text[i] & 0xFF];
+			if (letter < 0) continue;
+			if (quiet > 0) {
+				quiet--;
+				fast = fast == 25 * 26 ? 0 : fast + 26;
+			} else {
+				offsets[0] = fast;
+				positions[0] = fast / 26;
+				quietSteps = 0;
+				step();
+				fast = offsets[0];
+				middle = offsets[1];
+				slow = offsets[2];
+				quiet = quietSteps;
+			}
+			letter = reflector[forward[slow + forward[middle + forward[fast + letter]]]];
+			text[i] = (byte)('A' + inverse[fast + inverse[middle + inverse[slow + letter]]]);
+		}
+		offsets[0] = fast;
+		positions[0] = fast / 26;
+		quietSteps = quiet;
+	}
+
+	/*Method: step()*/
+	/*
+	 * turns the rotors for one key press. Most presses only turn the fast
+	 * rotor, and those are counted down without looking at any notches.
+	 * Otherwise, without double stepping this is an odometer: the fast
+	 * rotor always turns, and each other rotor turns when the one to its
+	 * right turns away from a notch. With double stepping each pawl is
+	 * checked before anything moves, as on the real machine: a rotor
+	 * sitting at its notch lets the pawl on its left push both it and its
+	 * left-hand neighbour, so a middle rotor at its notch turns again on
+	 * the next key press
+	 */
+	private void step() {
+		if (quietSteps > 0) {
+			quietSteps--;
+			advance(0);
+			return;
+		}
+		if (!doubleStepping) {
+			for (int i = 0; i < rotorCount; i++) {
+				boolean atNotch = (notchMasks[i] & (1 << positions[i])) != 0;
+				advance(i);
+				if (!atNotch) break;
+			}
+		} else {
+			int stepMask = 1;
+			for (int i = 0; i < rotorCount - 1; i++) {
+				if ((notchMasks[i] & (1 << positions[i])) != 0) stepMask |= 3 << i;
+			}
+			for (int i = 0; i < rotorCount; i++) {
+				if ((stepMask & (1 << i)) != 0) advance(i);
+			}
+		}
+		quietSteps = countQuietSteps();
+	}
+
+	/*Method: countQuietSteps()*/
+	/*
+	 * returns how many key presses from here will turn only the fast
+	 * rotor, which is how far the fast rotor is from its next notch, or
+	 * none if double stepping is about to move a rotor further left. This
+	 * only has to be worked out after a press that turned something else
+	 */
+	private int countQuietSteps() {
+		if (doubleStepping) {
+			for (int i = 1; i < rotorCount - 1; i++) {
+				if ((notchMasks[i] & (1 << positions[i])) != 0) return 0;
+			}
+		}
+		int steps = 0;
+		for (int pos = positions[0]; (notchMasks[0] & (1 << pos)) == 0; pos = (pos + 1) % 26) {
+			steps++;
+		}
+		return steps;
+	}
+
+	/*Method: advance()*/
+	/*
+	 * turns one rotor forward a letter, wrapping from Z back to A
+	 */
+	private void advance(int rotor) {
+		if (positions[rotor] == 25) {
+			positions[rotor] = 0;
+			offsets[rotor] -= 25 * 26;
+		} else {
+			positions[rotor]++;
+			offsets[rotor] += 26;
+		}
+	}
+
+	/* Private instance variables */
+	private int rotorCount; //the number of stepping rotors
+	private boolean doubleStepping; //whether middle rotors double step
+	private byte[] forward; //the definition's forward rotor tables
+	private byte[] inverse; //the definition's inverse rotor tables
+	private int[] notchMasks; //the notch letters of each rotor as bits, fast rotor first
+	private byte[] reflector; //the reflector with the thin rotor folded in
+	private int[] positions; //the position of each rotor, fast rotor first
+	private int[] offsets; //where each rotor's table for its position starts
+	private char thinLetter; //the setting of the thin rotor, or 0 if there isn't one
+	private int quietSteps; //the key presses left that turn only the fast rotor
+
+}
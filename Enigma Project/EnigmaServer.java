@@ -0,0 +1,232 @@
+/*
+ * File: EnigmaServer.java
+ * -----------------------
+ * This is a small Enigma encryption service that runs on the local
+ * machine, so that encrypting a message doesn't mean starting a new JVM
+ * each time. Clients connect to a local TCP port and send any number of
+ * requests over the same connection. Each request is one header line
+ *
+ *    ENCRYPT order setting length [plugboard pairs]
+ *
+ * (or DECRYPT, which is the same thing since the Enigma is its own
+ * inverse) followed by exactly length bytes of ASCII text. The reply is
+ * a line "OK length" followed by the same number of encrypted bytes, or
+ * a line "ERROR message" if the header was bad. The body is encrypted and
+ * sent back a buffer at a time as it arrives, so a large message is never
+ * held in memory. Every connection gets its own thread (a virtual thread
+ * when the JVM has them), and compiled machines are shared between all
+ * connections.
+ *
+ * Usage: java EnigmaServer [port]
+ */
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class EnigmaServer {
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		EnigmaServer server = new EnigmaServer(port);
+		System.err.println("Enigma server listening on " + server.getPort());
+		server.serve();
+	}
+
+	/**
+	 * Creates a server listening on a port of the loopback address.  Port
+	 * 0 picks any free port, which getPort() then reports.
+	 *
+	 * @param port The port to listen on
+	 * @throws IOException If the port can't be opened
+	 */
+
+	public EnigmaServer(int port) throws IOException {
+		serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+		executor = newConnectionExecutor();
+	}
+
+	/**
+	 * Gets the port the server is listening on.
+	 *
+	 * @return The port number
+	 */
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts connections until the server is closed, handing each one to
+	 * its own thread.
+	 *
+	 * @throws IOException If accepting a connection fails
+	 */
+
+	public void serve() throws IOException {
+		while (!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketException e) {
+				if (serverSocket.isClosed()) break;
+				throw e;
+			}
+			executor.execute(new Connection(socket));
+		}
+	}
+
+	/**
+	 * Stops accepting connections.  Requests already being handled are
+	 * allowed to finish.
+	 *
+	 * @throws IOException If closing the socket fails
+	 */
+
+	public void close() throws IOException {
+		serverSocket.close();
+		executor.shutdown();
+	}
+
+	/* Private methods */
+
+	/*Method: newConnectionExecutor()*/
+	/*
+	 * returns an executor that starts a virtual thread for each task if
+	 * this JVM has them (Java 21 and later), and otherwise one that reuses
+	 * ordinary threads. It is looked up by name so this file still
+	 * compiles on older JDKs.
+	 */
+	private static ExecutorService newConnectionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/*Method: getMachine()*/
+	/*
+	 * returns the compiled machine for a rotor order, setting and
+	 * plugboard, making it the first time it is asked for. Machines never
+	 * change, so every connection can share them. The cache is cleared if
+	 * it gets too big rather than tracking which entries are old.
+	 */
+	private EnigmaMachine getMachine(int order, String setting, String plugboard) {
+		String key = order + " " + setting.toUpperCase(Locale.ROOT) + " " + plugboard;
+		EnigmaMachine machine = machines.get(key);
+		if (machine == null) {
+			machine = new EnigmaMachine(order, setting, plugboard);
+			if (machines.size() >= MACHINE_CACHE_SIZE) machines.clear();
+			machines.put(key, machine);
+		}
+		return machine;
+	}
+
+	/*Method: readLine()*/
+	/*
+	 * reads one ASCII header line, without its line ending, or returns
+	 * null if the connection ended first
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int ch = in.read();
+		if (ch == -1) return null;
+		while (ch != -1 && ch != '\n') {
+			if (line.length() >= MAX_HEADER_LENGTH) throw new IOException("header line too long");
+			if (ch != '\r') line.append((char) ch);
+			ch = in.read();
+		}
+		return line.toString();
+	}
+
+	/*
+	 * Handles every request that comes in on one connection, then closes
+	 * it. A bad header gets an error reply, but since its body can't be
+	 * found without a good length, the connection is closed after that.
+	 */
+	private class Connection implements Runnable {
+
+		public Connection(Socket socket) {
+			this.socket = socket;
+		}
+
+		public void run() {
+			try (Socket s = socket;
+					InputStream in = new BufferedInputStream(s.getInputStream());
+					OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				String header = readLine(in);
+				while (header != null) {
+					if (!handleRequest(header, in, out, buffer)) break;
+					header = readLine(in);
+				}
+			} catch (IOException e) {
+				/* the client went away; nothing more to do for it */
+			}
+		}
+
+		/*Method: handleRequest()*/
+		/*
+		 * parses a header, streams the body through a new model for the
+		 * requested machine, and returns false if the header was bad
+		 */
+		private boolean handleRequest(String header, InputStream in, OutputStream out, byte[] buffer)
+				throws IOException {
+			String[] parts = header.trim().split("\\s+", 5);
+			EnigmaModel model;
+			long length;
+			try {
+				if (parts.length < 4 || !(parts[0].equals("ENCRYPT") || parts[0].equals("DECRYPT"))) {
+					throw new IllegalArgumentException("expected ENCRYPT order setting length [plugboard]");
+				}
+				length = Long.parseLong(parts[3]);
+				if (length < 0) throw new IllegalArgumentException("negative length");
+				String plugboard = parts.length == 5 ? parts[4] : "";
+				model = getMachine(Integer.parseInt(parts[1]), parts[2], plugboard).newModel();
+			} catch (IllegalArgumentException e) {
+				out.write(("ERROR " + e.getMessage() + "\n").getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+				return false;
+			}
+			out.write(("OK " + length + "\n").getBytes(StandardCharsets.US_ASCII));
+			while (length > 0) {
+				int count = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+				if (count == -1) throw new EOFException("body ended early");
+				model.encrypt(buffer, 0, count);
+				out.write(buffer, 0, count);
+				length -= count;
+			}
+			out.flush();
+			return true;
+		}
+
+		private Socket socket; //the connection to the client
+	}
+
+	/* Private instance variables */
+	private ServerSocket serverSocket; //the socket accepting connections
+	private ExecutorService executor; //runs one task per connection
+	private ConcurrentHashMap<String, EnigmaMachine> machines =
+		new ConcurrentHashMap<String, EnigmaMachine>(); //compiled machines shared by all connections
+
+	/* Private constants */
+
+	/* The port used when none is given */
+	private static final int DEFAULT_PORT = 8765;
+
+	/* The number of connections allowed to wait to be accepted */
+	private static final int BACKLOG = 128;
+
+	/* The most machines kept compiled at once */
+	private static final int MACHINE_CACHE_SIZE = 4096;
+
+	/* The longest header line accepted */
+	private static final int MAX_HEADER_LENGTH = 256;
+
+	/* The number of body bytes encrypted at a time */
+	private static final int BUFFER_SIZE = 8192;
+
+}
@@ -0,0 +1,123 @@
+/*
+ * File: EnigmaSession.java
+ * ------------------------
+ * This file is a class for encrypting one long stream that arrives in
+ * small frames. A session keeps a single EnigmaModel for its whole life,
+ * so each frame carries on from the rotor position the last one left
+ * off at, with no setting up in between. The rotor position can be saved
+ * as a checkpoint of a few bytes at any point, and a new session can be
+ * resumed from that checkpoint later, even in another process, as long
+ * as it is given the same machine configuration.
+ */
+
+public class EnigmaSession {
+
+	/**
+	 * Starts a new session at the machine's rotor setting.
+	 *
+	 * @param machine The machine configuration to encrypt with
+	 */
+
+	public EnigmaSession(EnigmaMachine machine) {
+		this.machine = machine;
+		model = machine.newModel();
+		model.setCompositeMode(true);
+	}
+
+	/**
+	 * Resumes a session from a checkpoint made by checkpoint().  The rotors
+	 * are put straight back where they were, however long the stream had
+	 * been running.
+	 *
+	 * @param machine The machine configuration the checkpoint was made with
+	 * @param checkpoint The saved checkpoint
+	 * @return A session that continues where the checkpoint was made
+	 * @throws IllegalArgumentException If the checkpoint is damaged or was
+	 *         made with a different rotor order
+	 */
+
+	public static EnigmaSession resume(EnigmaMachine machine, byte[] checkpoint) {
+		if (checkpoint.length != CHECKPOINT_SIZE || checkpoint[0] != CHECKPOINT_VERSION) {
+			throw new IllegalArgumentException("not an Enigma session checkpoint");
+		}
+		int order = ((checkpoint[1] & 0xFF) << 8) | (checkpoint[2] & 0xFF);
+		int position = ((checkpoint[3] & 0xFF) << 8) | (checkpoint[4] & 0xFF);
+		if (order != machine.getRotorOrder()) {
+			throw new IllegalArgumentException("checkpoint is for rotor order " + order
+					+ ", not " + machine.getRotorOrder());
+		}
+		if (position >= EnigmaMachine.PERIOD) {
+			throw new IllegalArgumentException("checkpoint rotor position out of range: " + position);
+		}
+		EnigmaSession session = new EnigmaSession(machine);
+		session.model.setRotorPosition(position);
+		return session;
+	}
+
+	/**
+	 * Encrypts the next frame of the stream.
+	 *
+	 * @param frame The next piece of plaintext
+	 * @return The ciphertext for that piece
+	 */
+
+	public String encrypt(String frame) {
+		return model.encrypt(frame);
+	}
+
+	/**
+	 * Encrypts the next frame of the stream, given as ASCII bytes, in
+	 * place.
+	 *
+	 * @param frame The array holding the frame
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes in the frame
+	 */
+
+	public void encrypt(byte[] frame, int offset, int length) {
+		model.encrypt(frame, offset, length);
+	}
+
+	/**
+	 * Saves the current state of the session as five bytes: a format
+	 * version, the rotor order, and the rotor position.  The plugboard is
+	 * part of the machine configuration and isn't saved.
+	 *
+	 * @return The checkpoint
+	 */
+
+	public byte[] checkpoint() {
+		int order = machine.getRotorOrder();
+		int position = model.getRotorPosition();
+		byte[] checkpoint = new byte[CHECKPOINT_SIZE];
+		checkpoint[0] = CHECKPOINT_VERSION;
+		checkpoint[1] = (byte)(order >> 8);
+		checkpoint[2] = (byte) order;
+		checkpoint[3] = (byte)(position >> 8);
+		checkpoint[4] = (byte) position;
+		return checkpoint;
+	}
+
+	/**
+	 * Gets the current rotor setting of the session.
+	 *
+	 * @return The current rotor setting
+	 */
+
+	public String getRotorSetting() {
+		return model.getRotorSetting();
+	}
+
+	/* Private instance variables */
+	private EnigmaMachine machine; //the machine configuration of the stream
+	private EnigmaModel model; //the model that keeps turning for the whole stream
+
+	/* Private constants */
+
+	/* The format version written at the start of every checkpoint */
+	private static final byte CHECKPOINT_VERSION = 1;
+
+	/* The number of bytes in a checkpoint */
+	private static final int CHECKPOINT_SIZE = 5;
+
+}
@@ -4,20 +4,108 @@
  * This is the file for an enigma simulator which uses the console program
  * to enter the rotor order, the rotor setting, and the plaintext. It then
  * uses the EnigmaModel class to do all the calculations and then shows the 
- * user their completed ciphertext.
+ * user their completed ciphertext. To encrypt whole files without the 
+ * console window, use EnigmaCommandLine instead.
  */
 
 import acm.program.*;
 
+import java.awt.*;
+import java.awt.event.*;
+
 public class EnigmaSimulator extends ConsoleProgram {
 
 	private EnigmaModel enigma = new EnigmaModel(); //enigma instance variable
+	private char[] rotorDisplay = new char[3]; //the rotor letters shown in lampboard mode
 
 	public void run() {
 		setOrder();
 		setSetting();
-		String plaintext = readLine("Enter a plaintext line: ");
-		println("The encoded ciphertext: " + enigma.encrypt(plaintext));
+		String plaintext = readLine("Enter a plaintext line (or press return for lampboard mode): ");
+		if (plaintext.length() == 0) {
+			startLampboard();
+		} else println("The encoded ciphertext: " + enigma.encrypt(plaintext));
+	}
+	
+	/*Method: startLampboard()*/
+	/*
+	 * switches to lampboard mode, where every letter typed is encrypted as
+	 * soon as it is pressed like on the real machine. The letters are
+	 * caught before they reach the console so they aren't echoed, and each
+	 * one shows the lamp that lights up, the rotor letters after the key,
+	 * and how long the model took to encrypt it. Escape leaves lampboard
+	 * mode.
+	 */
+	private void startLampboard() {
+		int position = enigma.getRotorPosition();
+		rotorDisplay[0] = (char)('A' + position / (26 * 26));
+		rotorDisplay[1] = (char)('A' + (position / 26) % 26);
+		rotorDisplay[2] = (char)('A' + position % 26);
+		println("Lampboard mode: type letters to encrypt them one at a time, or press escape to stop.");
+		println("Rotors: " + new String(rotorDisplay));
+		KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(new Lampboard());
+	}
+	
+	/*Method: updateRotorDisplay()*/
+	/*
+	 * steps the rotor letters after a key has lit a lamp, the same way the
+	 * model steps its rotors. The fast letter always moves on one, and the
+	 * letter to its left only moves when it wraps round from Z to A, so
+	 * nothing has to be worked out again from the rotor position.
+	 */
+	private void updateRotorDisplay() {
+		for (int rotor = 2; rotor >= 0; rotor--) {
+			if (rotorDisplay[rotor] != 'Z') {
+				rotorDisplay[rotor]++;
+				return;
+			}
+			rotorDisplay[rotor] = 'A';
+		}
+	}
+	
+	/*
+	 * Sees every key typed in the window while in lampboard mode. Letters
+	 * are sent through the Enigma model and kept from the console, escape
+	 * takes this dispatcher off the focus manager again, and every other
+	 * key is passed on as usual.
+	 */
+	private class Lampboard implements KeyEventDispatcher {
+		
+		public boolean dispatchKeyEvent(KeyEvent e) {
+			if (e.getID() != KeyEvent.KEY_TYPED) return false;
+			char key = e.getKeyChar();
+			if (key == KeyEvent.VK_ESCAPE) {
+				KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(this);
+				println("Lampboard mode off.");
+				return true;
+			}
+			int letter = (key | 0x20) - 'a';
+			if (letter < 0 || letter >= 26) return false;
+			long start = System.nanoTime();
+			char lamp = enigma.pressKey(key);
+			long nanos = System.nanoTime() - start;
+			updateRotorDisplay();
+			printLamp((char)('A' + letter), lamp, nanos);
+			return true;
+		}
+	}
+
+	/*Method: printLamp()*/
+	/*
+	 * prints the line for one key a piece at a time, so that typing
+	 * doesn't build a new string for every key
+	 */
+	private void printLamp(char key, char lamp, long nanos) {
+		print(key);
+		print(" -> ");
+		print(lamp);
+		print("   rotors ");
+		print(rotorDisplay[0]);
+		print(rotorDisplay[1]);
+		print(rotorDisplay[2]);
+		print("   ");
+		print(nanos);
+		println(" ns");
 	}
 	
 	/*Method: setOrder()*/
@@ -4,12 +4,10 @@
  * This program takes a 26 letter substitution cipher key and checks to
  * make sure it is a valid key then inverts the key and prints the 
  * inverted key for the user, then inverts the key again back to the 
- * original to prove it inverted the key correctly
+ * original to prove it inverted the key correctly. To check and invert
+ * a whole file of keys, use InvertKeyBulk.
  */
 
-import java.util.Set;
-import java.util.*;
-
 import acm.program.*;
 
 public class InvertKey extends ConsoleProgram {
@@ -45,19 +43,12 @@ public class InvertKey extends ConsoleProgram {
 	/*Method: invertKey()*/
 	/*
 	 * takes a valid substitution cipher key and returns the inverted 
-	 * version that can be used for deciphering a message. Does this by
-	 * finding the distance on the string of an indexed letter then 
-	 * adding that distance to A to find the new letter for the inverted 
-	 * key
+	 * version that can be used for deciphering a message. SubstitutionKey
+	 * works out the inverse table when the key is made, so this is a
+	 * single pass over the alphabet
 	 */
 	private String invertKey(String key) {
-		String invertedKey = "";
-		key = key.toUpperCase();
-		for(int i = 0; i < 26; i++) {
-			int distance = key.indexOf('A' + i);
-			invertedKey += (char)('A' + distance);
-		}
-		return invertedKey;
+		return new SubstitutionKey(key).invert().toString();
 	}
 
 	/*Method: keyIsLegal()*/
@@ -65,41 +56,17 @@ public class InvertKey extends ConsoleProgram {
 	 * checks to see if the key provided is legal and abides by the 
 	 * conditions of having all the letters in the alphabet only once
 	 * and returns true if it abides by the conditions and false if it 
-	 * doesn't
+	 * doesn't. It prints each problem SubstitutionKey finds so that the
+	 * user can know which letters they have duplicated and which letters
+	 * they are missing
 	 */
 	private boolean keyIsLegal(String key) {
-		if (key.length() == 26 && stringHasAllLetters(key)) {
-			return true;
-		}
-		return false;
-	}
-	
-	/*Method: stringHasAllLetters()*/
-	/*
-	 * checks to see if a the string contains all the letters in the 
-	 * alphabet only once by making a set with one of each letter then
-	 * taking the letter away every time it comes up in the key and 
-	 * checking at the end for any remaining letters. It then prints the
-	 * letters so that the user can know which letters he has duplicated
-	 * and which letters he is missing
-	 */
-	private boolean stringHasAllLetters(String key) {
-		key = key.toUpperCase();
-		Set<Character> alphabetLetters = new TreeSet();
-		for(int i = 0; i < 26; i++) {
-			char ch = (char)('A' + i);
-			alphabetLetters.add(ch);
-		}
-		for(int j = 0; j < 26; j++) {
-			char ch = key.charAt(j);
-			if (alphabetLetters.contains(ch)) {
-				alphabetLetters.remove(ch);
-			} else println("duplicate letter " + ch);
-		}
-		if(alphabetLetters.size()==0) return true;
-		else {
-			println("missing letter(s): " + alphabetLetters);
-			return false;
+		SubstitutionKey.Check check = SubstitutionKey.check(key);
+		if (check.getLength() == 26) {
+			for (String message : check.getMessages()) {
+				println(message);
+			}
 		}
+		return check.isLegal();
 	}
 }
@@ -0,0 +1,260 @@
+/*
+ * File: InvertKeyBulk.java
+ * ------------------------
+ * This is a command-line version of InvertKey for checking and inverting
+ * large numbers of keys at once. It reads candidate keys one per line
+ * from a file or standard input and writes one line for each: the
+ * inverted key if the key is legal, or a line starting with ERROR that
+ * gives the line number and everything wrong with the key, in the same
+ * words InvertKey uses. Output lines are in the same order as the input.
+ *
+ * The input is read as raw bytes in large blocks. The lines of a block
+ * are checked against a 26-bit mask of the letters seen and inverted
+ * directly into the output bytes, with groups of lines handled at the
+ * same time on the common fork/join pool.
+ *
+ * Usage: java InvertKeyBulk [input [output]]
+ */
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class InvertKeyBulk {
+
+	public static void main(String[] args) {
+		if (args.length > 2) {
+			System.err.println("usage: java InvertKeyBulk [input [output]]");
+			System.exit(2);
+		}
+		try (InputStream in = args.length > 0 ? new FileInputStream(args[0]) : System.in;
+				OutputStream out = args.length > 1 ? new FileOutputStream(args[1]) : System.out) {
+			long start = System.nanoTime();
+			Counts counts = invertAll(in, out);
+			System.err.printf("%d keys inverted, %d errors in %.2f s%n", counts.getKeys(), counts.getErrors(),
+					(System.nanoTime() - start) / 1e9);
+		} catch (IOException e) {
+			System.err.println("error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reads keys one per line until the end of a stream, and writes the
+	 * inverted key or an error line for each one.  Lines may end with
+	 * either "\n" or "\r\n".  The streams are not closed.
+	 *
+	 * @param in The stream of keys
+	 * @param out The stream the results are written to
+	 * @return The number of keys inverted and the number of errors
+	 * @throws IOException If reading or writing fails
+	 */
+
+	public static Counts invertAll(InputStream in, OutputStream out) throws IOException {
+		Counts counts = new Counts();
+		byte[] block = new byte[BLOCK_SIZE];
+		int filled = 0;
+		long firstLine = 1;
+		while (true) {
+			int count = in.read(block, filled, block.length - filled);
+			if (count == -1) break;
+			filled += count;
+			int end = lastLineEnd(block, filled);
+			if (end < 0) {
+				if (filled < block.length) continue;
+				end = filled;
+			}
+			firstLine += invertBlock(block, end, firstLine, out, counts);
+			filled -= end;
+			System.arraycopy(block, end, block, 0, filled);
+		}
+		if (filled > 0) {
+			invertBlock(block, filled, firstLine, out, counts);
+		}
+		out.flush();
+		return counts;
+	}
+
+	/**
+	 * The number of keys inverted and the number of lines that weren't
+	 * legal keys.
+	 */
+
+	public static class Counts {
+
+		public long getKeys() {
+			return keys;
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		private long keys; //the keys inverted
+		private long errors; //the lines that weren't legal keys
+	}
+
+	/* Private methods */
+
+	/*Method: lastLineEnd()*/
+	/*
+	 * returns the index just after the last newline in the first length
+	 * bytes of a block, or -1 if there isn't one
+	 */
+	private static int lastLineEnd(byte[] block, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (block[i] == '\n') return i + 1;
+		}
+		return -1;
+	}
+
+	/*Method: invertBlock()*/
+	/*
+	 * finds where each line of a block starts, inverts groups of lines on
+	 * the fork/join pool, writes the results in order, and returns the
+	 * number of lines in the block
+	 */
+	private static int invertBlock(byte[] block, int length, long firstLine, OutputStream out, Counts counts)
+			throws IOException {
+		int[] starts = new int[1024];
+		int lines = 0;
+		int start = 0;
+		while (start < length) {
+			if (lines + 1 >= starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+			starts[lines++] = start;
+			while (start < length && block[start] != '\n') {
+				start++;
+			}
+			start++;
+		}
+		starts[lines] = Math.min(start, length + 1);
+		int groups = (lines + GROUP_SIZE - 1) / GROUP_SIZE;
+		byte[][] results = new byte[groups][];
+		int[] errors = new int[groups];
+		if (groups > 0) {
+			ForkJoinPool.commonPool().invoke(
+					new InvertGroups(block, starts, lines, firstLine, results, errors, 0, groups));
+		}
+		for (int i = 0; i < groups; i++) {
+			out.write(results[i]);
+			int groupLines = Math.min(GROUP_SIZE, lines - i * GROUP_SIZE);
+			counts.keys += groupLines - errors[i];
+			counts.errors += errors[i];
+		}
+		return lines;
+	}
+
+	/*
+	 * Inverts groups first to last of a block's lines. Inverted keys and
+	 * error lines differ in length, so a group can't know where its output
+	 * belongs until the groups before it are done. Instead each group fills
+	 * its own array, and invertBlock() writes them out in order afterwards.
+	 */
+	private static class InvertGroups extends RecursiveAction {
+
+		public InvertGroups(byte[] block, int[] starts, int lines, long firstLine, byte[][] results,
+				int[] errors, int first, int last) {
+			this.block = block;
+			this.starts = starts;
+			this.lines = lines;
+			this.firstLine = firstLine;
+			this.results = results;
+			this.errors = errors;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if (last - first == 1) {
+				invertGroup(first);
+			} else {
+				int middle = (first + last) >>> 1;
+				invokeAll(new InvertGroups(block, starts, lines, firstLine, results, errors, first, middle),
+						new InvertGroups(block, starts, lines, firstLine, results, errors, middle, last));
+			}
+		}
+
+		/*Method: invertGroup()*/
+		/*
+		 * inverts every line of one group. A legal key is written straight
+		 * into the output as its inverse: the letter at each position of
+		 * the key says where that position's letter goes in the inverse.
+		 * Anything else is handed to SubstitutionKey.check() for the error
+		 * line
+		 */
+		private void invertGroup(int group) {
+			int firstIndex = group * GROUP_SIZE;
+			int lastIndex = Math.min(lines, firstIndex + GROUP_SIZE);
+			byte[] output = new byte[(lastIndex - firstIndex) * (KEY_LENGTH + 1)];
+			int size = 0;
+			int errorCount = 0;
+			for (int line = firstIndex; line < lastIndex; line++) {
+				int start = starts[line];
+				int end = starts[line + 1] - 1;
+				if (end > start && block[end - 1] == '\r') end--;
+				if (size + KEY_LENGTH + 1 > output.length) {
+					output = Arrays.copyOf(output, output.length * 2 + KEY_LENGTH + 1);
+				}
+				if (end - start == KEY_LENGTH && invertKey(block, start, output, size)) {
+					size += KEY_LENGTH;
+					output[size++] = '\n';
+				} else {
+					String key = new String(block, start, end - start, StandardCharsets.ISO_8859_1);
+					String message = "ERROR line " + (firstLine + line) + ": " + SubstitutionKey.check(key) + "\n";
+					byte[] bytes = message.getBytes(StandardCharsets.ISO_8859_1);
+					if (size + bytes.length > output.length) {
+						output = Arrays.copyOf(output, Math.max(output.length * 2, size + bytes.length));
+					}
+					System.arraycopy(bytes, 0, output, size, bytes.length);
+					size += bytes.length;
+					errorCount++;
+				}
+			}
+			results[group] = size == output.length ? output : Arrays.copyOf(output, size);
+			errors[group] = errorCount;
+		}
+
+		private byte[] block; //the block of input
+		private int[] starts; //where each line starts, then one past the end of the last
+		private int lines; //the number of lines in the block
+		private long firstLine; //the line number of the block's first line
+		private byte[][] results; //the output of each group
+		private int[] errors; //the number of error lines in each group
+		private int first; //the first group to invert
+		private int last; //one past the last group to invert
+	}
+
+	/*Method: invertKey()*/
+	/*
+	 * checks the 26 bytes of a key against a mask of the letters seen and,
+	 * if every letter is there exactly once, writes the inverted key into
+	 * the output. Returns false for an illegal key, in which case the
+	 * output bytes may have been written over but are not counted
+	 */
+	private static boolean invertKey(byte[] key, int start, byte[] output, int offset) {
+		int seen = 0;
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			int letter = (key[start + i] | 0x20) - 'a';
+			if (letter < 0 || letter >= 26) return false;
+			seen |= 1 << letter;
+			output[offset + letter] = (byte)('A' + i);
+		}
+		return seen == ALL_LETTERS;
+	}
+
+	/* Private constants */
+
+	/* The number of bytes of input read at a time */
+	private static final int BLOCK_SIZE = 1 << 22;
+
+	/* The number of lines inverted together by one task */
+	private static final int GROUP_SIZE = 4096;
+
+	/* The number of letters in a key */
+	private static final int KEY_LENGTH = 26;
+
+	/* The mask with a bit set for each of the 26 letters */
+	private static final int ALL_LETTERS = (1 << 26) - 1;
+
+}
@@ -7,7 +7,6 @@
  */
 
 import acm.program.*;
-import java.util.*;
 
 public class LetterSubstitutionCipher extends ConsoleProgram {
 
@@ -34,16 +33,7 @@ public class LetterSubstitutionCipher extends ConsoleProgram {
 	 */
 
 	private String encrypt(String str, String key) {
-		String result = "";
-		str = str.toUpperCase();
-		for (int i = 0; i < str.length(); i++) {
-			char ch = str.charAt(i);
-			if (Character.isLetter(ch)) {
-				ch = key.charAt(ch - 'A');
-			}
-			result += ch;
-		}
-		return result;
+		return new SubstitutionKey(key).encrypt(str);
 	}
 
 	/*Method: keyIsLegal()*/
@@ -51,41 +41,17 @@ public class LetterSubstitutionCipher extends ConsoleProgram {
 	 * checks to see if the key provided is legal and abides by the 
 	 * conditions of having all the letters in the alphabet only once
 	 * and returns true if it abides by the conditions and false if it 
-	 * doesn't
+	 * doesn't. It prints each problem SubstitutionKey finds so that the
+	 * user can know which letters they have duplicated and which letters
+	 * they are missing
 	 */
 	private boolean keyIsLegal(String key) {
-		if (key.length() == 26 && stringHasAllLetters(key)) {
-			return true;
-		}
-		return false;
-	}
-	
-	/*Method: stringHasAllLetters()*/
-	/*
-	 * checks to see if a the string contains all the letters in the 
-	 * alphabet only once by making a set with one of each letter then
-	 * taking the letter away every time it comes up in the key and 
-	 * checking at the end for any remaining letters. It then prints the
-	 * letters so that the user can know which letters he has duplicated
-	 * and which letters he is missing
-	 */
-	private boolean stringHasAllLetters(String key) {
-		key = key.toUpperCase();
-		Set<Character> alphabetLetters = new TreeSet();
-		for(int i = 0; i < 26; i++) {
-			char ch = (char)('A' + i);
-			alphabetLetters.add(ch);
-		}
-		for(int j = 0; j < 26; j++) {
-			char ch = key.charAt(j);
-			if (alphabetLetters.contains(ch)) {
-				alphabetLetters.remove(ch);
-			} else println("duplicate letter " + ch);
-		}
-		if(alphabetLetters.size()==0) return true;
-		else {
-			println("missing letter(s): " + alphabetLetters);
-			return false;
+		SubstitutionKey.Check check = SubstitutionKey.check(key);
+		if (check.getLength() == 26) {
+			for (String message : check.getMessages()) {
+				println(message);
+			}
 		}
+		return check.isLegal();
 	}
 }
@@ -0,0 +1,328 @@
+/*
+ * File: PolyalphabeticCipher.java
+ * -------------------------------
+ * This file is a class for periodic polyalphabetic ciphers, which use a
+ * different letter substitution for each letter of a repeating keyword
+ * instead of the single fixed key of LetterSubstitutionCipher. Two are
+ * supported: the Vigenere cipher, which shifts each letter forward by
+ * the keyword letter, and the Beaufort cipher, which subtracts each
+ * letter from the keyword letter and so is its own inverse.
+ *
+ * The substitution for every letter of the keyword is worked out once
+ * into a tableau with one row of 26 entries per keyword letter. Text is
+ * then translated by stepping through the rows, wrapping back to the
+ * first row at the end of the keyword without any division. Only letters
+ * use up a row; everything else is copied through. Because of that, the
+ * row a piece of text starts on depends only on how many letters come
+ * before it, so a long message can be split into chunks that are all
+ * translated at the same time.
+ */
+
+import java.util.concurrent.*;
+
+public class PolyalphabeticCipher {
+
+	/**
+	 * Creates a Vigenere cipher with a keyword.
+	 *
+	 * @param keyword The keyword, in letters of either case
+	 * @return The cipher
+	 * @throws IllegalArgumentException If the keyword is empty or has
+	 *         anything but letters in it
+	 */
+
+	public static PolyalphabeticCipher vigenere(String keyword) {
+		int[] shifts = keywordShifts(keyword);
+		byte[] encrypt = new byte[shifts.length * 26];
+		byte[] decrypt = new byte[shifts.length * 26];
+		for (int row = 0; row < shifts.length; row++) {
+			for (int i = 0; i < 26; i++) {
+				encrypt[row * 26 + i] = (byte)((i + shifts[row]) % 26);
+				decrypt[row * 26 + i] = (byte)((i - shifts[row] + 26) % 26);
+			}
+		}
+		return new PolyalphabeticCipher(encrypt, decrypt);
+	}
+
+	/**
+	 * Creates a Beaufort cipher with a keyword.  Encrypting and
+	 * decrypting are the same operation.
+	 *
+	 * @param keyword The keyword, in letters of either case
+	 * @return The cipher
+	 * @throws IllegalArgumentException If the keyword is empty or has
+	 *         anything but letters in it
+	 */
+
+	public static PolyalphabeticCipher beaufort(String keyword) {
+		int[] shifts = keywordShifts(keyword);
+		byte[] tableau = new byte[shifts.length * 26];
+		for (int row = 0; row < shifts.length; row++) {
+			for (int i = 0; i < 26; i++) {
+				tableau[row * 26 + i] = (byte)((shifts[row] - i + 26) % 26);
+			}
+		}
+		return new PolyalphabeticCipher(tableau, tableau);
+	}
+
+	/**
+	 * Gets the length of the keyword, after which the substitutions repeat.
+	 *
+	 * @return The period of the cipher
+	 */
+
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Encrypts a string, starting from the first letter of the keyword.
+	 * Letters come out in uppercase, and anything else is copied to the
+	 * output in uppercase.
+	 *
+	 * @param plaintext The string to encrypt
+	 * @return The encrypted string
+	 */
+
+	public String encrypt(String plaintext) {
+		char[] result = plaintext.toCharArray();
+		translate(result, 0, result.length, encryptTableau, 0);
+		return new String(result);
+	}
+
+	/**
+	 * Decrypts a string that was encrypted with encrypt(String).
+	 *
+	 * @param ciphertext The string to decrypt
+	 * @return The decrypted string
+	 */
+
+	public String decrypt(String ciphertext) {
+		char[] result = ciphertext.toCharArray();
+		translate(result, 0, result.length, decryptTableau, 0);
+		return new String(result);
+	}
+
+	/**
+	 * Encrypts a range of ASCII bytes in place, starting at a given letter
+	 * of the keyword, and returns the keyword letter the next byte would
+	 * use.  Passing that back in for the next range lets a stream be
+	 * encrypted a buffer at a time.  Letters come out in uppercase and
+	 * every other byte is left alone.
+	 *
+	 * @param text The array holding the bytes
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes to encrypt
+	 * @param phase The index in the keyword to start at
+	 * @return The index in the keyword to carry on from
+	 */
+
+	public int encrypt(byte[] text, int offset, int length, int phase) {
+		return translate(text, offset, length, encryptTableau, checkPhase(phase));
+	}
+
+	/**
+	 * Decrypts a range of ASCII bytes in place, in the same way as
+	 * encrypt(byte[], int, int, int).
+	 *
+	 * @param text The array holding the bytes
+	 * @param offset The index of the first byte
+	 * @param length The number of bytes to decrypt
+	 * @param phase The index in the keyword to start at
+	 * @return The index in the keyword to carry on from
+	 */
+
+	public int decrypt(byte[] text, int offset, int length, int phase) {
+		return translate(text, offset, length, decryptTableau, checkPhase(phase));
+	}
+
+	/**
+	 * Encrypts a string in the same way as encrypt(String), but splits a
+	 * long message into chunks that are encrypted at the same time on the
+	 * common fork/join pool.  The keyword letter each chunk starts on is
+	 * found from the number of letters before it, so the result is
+	 * identical to the sequential version.
+	 *
+	 * @param plaintext The string to encrypt
+	 * @return The encrypted string
+	 */
+
+	public String encryptParallel(String plaintext) {
+		return translateParallel(plaintext, encryptTableau);
+	}
+
+	/**
+	 * Decrypts a string in the same way as decrypt(String), splitting it
+	 * into chunks that are decrypted at the same time.
+	 *
+	 * @param ciphertext The string to decrypt
+	 * @return The decrypted string
+	 */
+
+	public String decryptParallel(String ciphertext) {
+		return translateParallel(ciphertext, decryptTableau);
+	}
+
+	/* Private methods */
+
+	/*Constructor*/
+	/*
+	 * makes a cipher from its encryption and decryption tableaus
+	 */
+	private PolyalphabeticCipher(byte[] encryptTableau, byte[] decryptTableau) {
+		this.encryptTableau = encryptTableau;
+		this.decryptTableau = decryptTableau;
+		period = encryptTableau.length / 26;
+	}
+
+	/*Method: keywordShifts()*/
+	/*
+	 * returns each letter of the keyword as a number from 0 to 25
+	 */
+	private static int[] keywordShifts(String keyword) {
+		if (keyword.length() == 0) {
+			throw new IllegalArgumentException("keyword must not be empty");
+		}
+		int[] shifts = new int[keyword.length()];
+		for (int i = 0; i < shifts.length; i++) {
+			int letter = (keyword.charAt(i) | 0x20) - 'a';
+			if (letter < 0 || letter >= 26) {
+				throw new IllegalArgumentException("keyword must be letters: " + keyword);
+			}
+			shifts[i] = letter;
+		}
+		return shifts;
+	}
+
+	/*Method: checkPhase()*/
+	/*
+	 * makes sure a phase is an index into the keyword
+	 */
+	private int checkPhase(int phase) {
+		if (phase < 0 || phase >= period) {
+			throw new IllegalArgumentException("phase out of range: " + phase);
+		}
+		return phase;
+	}
+
+	/*Method: translate()*/
+	/*
+	 * runs the letters of a range of characters through the tableau,
+	 * starting at the given row, and returns the row the next letter
+	 * would use. The row offset is moved along by 26 for each letter and
+	 * reset when it runs off the end, so no division is needed
+	 */
+	private int translate(char[] text, int start, int end, byte[] tableau, int phase) {
+		int row = phase * 26;
+		int limit = tableau.length;
+		for (int i = start; i < end; i++) {
+			char ch = text[i];
+			int letter = (ch | 0x20) - 'a';
+			if (letter >= 0 && letter < 26) {
+				text[i] = (char)('A' + tableau[row + letter]);
+				row += 26;
+				if (row == limit) row = 0;
+			} else text[i] = Character.toUpperCase(ch);
+		}
+		return row / 26;
+	}
+
+	/*Method: translate()*/
+	/*
+	 * runs the letters of a range of ASCII bytes through the tableau in
+	 * the same way
+	 */
+	private int translate(byte[] text, int offset, int length, byte[] tableau, int phase) {
+		int row = phase * 26;
+		int limit = tableau.length;
+		for (int i = offset; i < offset + length; i++) {
+			int letter = (text[i] | 0x20) - 'a';
+			if (letter >= 0 && letter < 26) {
+				text[i] = (byte)('A' + tableau[row + letter]);
+				row += 26;
+				if (row == limit) row = 0;
+			}
+		}
+		return row / 26;
+	}
+
+	/*Method: translateParallel()*/
+	/*
+	 * counts the letters in each chunk to find the row it starts on, then
+	 * translates all the chunks on the fork/join pool
+	 */
+	private String translateParallel(String text, byte[] tableau) {
+		char[] result = text.toCharArray();
+		int chunks = (result.length + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		int[] startPhases = new int[chunks];
+		int phase = 0;
+		for (int i = 0; i < chunks; i++) {
+			startPhases[i] = phase;
+			int end = Math.min(result.length, (i + 1) * PARALLEL_CHUNK_SIZE);
+			phase = (phase + countLetters(result, i * PARALLEL_CHUNK_SIZE, end)) % period;
+		}
+		if (chunks > 0) {
+			ForkJoinPool.commonPool().invoke(new TranslateChunks(result, tableau, startPhases, 0, chunks));
+		}
+		return new String(result);
+	}
+
+	/*Method: countLetters()*/
+	/*
+	 * returns the number of letters in a range of characters
+	 */
+	private static int countLetters(char[] text, int start, int end) {
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			int letter = (text[i] | 0x20) - 'a';
+			if (letter >= 0 && letter < 26) count++;
+		}
+		return count;
+	}
+
+	/*
+	 * Translates chunks first to last of a message in place. Only letters
+	 * use up a keyword row, so the row a chunk starts on can't be found
+	 * from its index alone; each chunk is given the row translateParallel()
+	 * counted up to for it.
+	 */
+	private class TranslateChunks extends RecursiveAction {
+
+		public TranslateChunks(char[] text, byte[] tableau, int[] startPhases, int first, int last) {
+			this.text = text;
+			this.tableau = tableau;
+			this.startPhases = startPhases;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if (last - first == 1) {
+				int start = first * PARALLEL_CHUNK_SIZE;
+				int end = Math.min(text.length, start + PARALLEL_CHUNK_SIZE);
+				translate(text, start, end, tableau, startPhases[first]);
+			} else {
+				int middle = (first + last) >>> 1;
+				invokeAll(new TranslateChunks(text, tableau, startPhases, first, middle),
+						new TranslateChunks(text, tableau, startPhases, middle, last));
+			}
+		}
+
+		private char[] text; //the whole message being translated
+		private byte[] tableau; //the tableau to translate with
+		private int[] startPhases; //the keyword row each chunk starts on
+		private int first; //the first chunk to translate
+		private int last; //one past the last chunk to translate
+	}
+
+	/* Private instance variables */
+	private byte[] encryptTableau; //the encryption substitution for each keyword letter, 26 entries each
+	private byte[] decryptTableau; //the decryption substitution for each keyword letter
+	private int period; //the length of the keyword
+
+	/* Private constants */
+
+	/* The number of characters in each chunk handled by the parallel methods */
+	private static final int PARALLEL_CHUNK_SIZE = 1 << 16;
+
+}
@@ -0,0 +1,213 @@
+/*
+ * File: SubstitutionFileCipher.java
+ * ---------------------------------
+ * This is a command-line version of LetterSubstitutionCipher for whole
+ * files, however large. The input is memory-mapped a region at a time and
+ * each region is split into chunks that start on page boundaries. A
+ * substitution cipher treats every letter the same no matter where it
+ * is, so the chunks have nothing to do with each other and are
+ * translated at the same time on the common fork/join pool, each through
+ * a 256-entry table made from the key. The result goes to a mapped output
+ * file, or back into the input file itself if no output is given.
+ *
+ * Usage: java SubstitutionFileCipher [-d] key input [output]
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+public class SubstitutionFileCipher {
+
+	public static void main(String[] args) {
+		boolean decrypt = args.length > 0 && args[0].equals("-d");
+		int first = decrypt ? 1 : 0;
+		if (args.length - first < 2 || args.length - first > 3) {
+			System.err.println("usage: java SubstitutionFileCipher [-d] key input [output]");
+			System.exit(2);
+		}
+		SubstitutionKey.Check check = SubstitutionKey.check(args[first]);
+		if (!check.isLegal()) {
+			for (String message : check.getMessages()) {
+				System.err.println(message);
+			}
+			System.exit(2);
+		}
+		try {
+			byte[] table = new SubstitutionKey(args[first]).byteTable(decrypt);
+			Path input = Paths.get(args[first + 1]);
+			long start = System.nanoTime();
+			long bytes = args.length - first == 3
+					? translateFile(table, input, Paths.get(args[first + 2]))
+					: translateInPlace(table, input);
+			System.err.printf("translated %d bytes in %.2f s%n", bytes, (System.nanoTime() - start) / 1e9);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		} catch (IOException e) {
+			System.err.println("error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Encrypts a whole file with a key, writing the result to another file,
+	 * which is created or replaced.  The output must not be the input
+	 * file; use encryptInPlace() for that.
+	 *
+	 * @param key The substitution key
+	 * @param input The file to read
+	 * @param output The file to write
+	 * @return The number of bytes encrypted
+	 * @throws IOException If reading or writing fails
+	 * @throws IllegalArgumentException If the output is the input file
+	 */
+
+	public static long encryptFile(SubstitutionKey key, Path input, Path output) throws IOException {
+		return translateFile(key.byteTable(false), input, output);
+	}
+
+	/**
+	 * Decrypts a whole file that was encrypted with a key, writing the
+	 * result to another file, which is created or replaced.  The output
+	 * must not be the input file.
+	 *
+	 * @param key The substitution key
+	 * @param input The file to read
+	 * @param output The file to write
+	 * @return The number of bytes decrypted
+	 * @throws IOException If reading or writing fails
+	 * @throws IllegalArgumentException If the output is the input file
+	 */
+
+	public static long decryptFile(SubstitutionKey key, Path input, Path output) throws IOException {
+		return translateFile(key.byteTable(true), input, output);
+	}
+
+	/**
+	 * Encrypts a whole file with a key, replacing its contents.
+	 *
+	 * @param key The substitution key
+	 * @param file The file to encrypt
+	 * @return The number of bytes encrypted
+	 * @throws IOException If reading or writing fails
+	 */
+
+	public static long encryptInPlace(SubstitutionKey key, Path file) throws IOException {
+		return translateInPlace(key.byteTable(false), file);
+	}
+
+	/* Private methods */
+
+	/*Method: translateFile()*/
+	/*
+	 * translates one file into another through a byte table, mapping both
+	 * a region at a time. Mapping the output for writing past its end
+	 * makes the file grow to fit. The output can't be the input file, even
+	 * under another name, since opening it for writing would empty it
+	 * before it was read
+	 */
+	private static long translateFile(byte[] table, Path input, Path output) throws IOException {
+		if (Files.exists(output) && Files.isSameFile(input, output)) {
+			throw new IllegalArgumentException("output file must not be the input file: " + output);
+		}
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			for (long start = 0; start < size; start += MAP_SIZE) {
+				long length = Math.min(MAP_SIZE, size - start);
+				MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, start, length);
+				MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, start, length);
+				translateRegion(table, source, target);
+			}
+			return size;
+		}
+	}
+
+	/*Method: translateInPlace()*/
+	/*
+	 * translates a file through a byte table, writing each region back
+	 * where it was read from
+	 */
+	private static long translateInPlace(byte[] table, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			for (long start = 0; start < size; start += MAP_SIZE) {
+				long length = Math.min(MAP_SIZE, size - start);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+				translateRegion(table, region, region);
+			}
+			return size;
+		}
+	}
+
+	/*Method: translateRegion()*/
+	/*
+	 * splits a mapped region into chunks and translates them all on the
+	 * fork/join pool, then makes sure the output has reached the file
+	 */
+	private static void translateRegion(byte[] table, ByteBuffer source, MappedByteBuffer target) {
+		int chunks = (source.limit() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (chunks > 0) {
+			ForkJoinPool.commonPool().invoke(new TranslateChunks(table, source, target, 0, chunks));
+		}
+		target.force();
+	}
+
+	/*
+	 * Translates chunks first to last of a mapped region. Every chunk is a
+	 * whole number of pages, so no two tasks ever write to the same page
+	 * of the output. A chunk is copied into an array, translated there,
+	 * and copied back out, since bulk copies of mapped memory are much
+	 * faster than reading it a byte at a time.
+	 */
+	private static class TranslateChunks extends RecursiveAction {
+
+		public TranslateChunks(byte[] table, ByteBuffer source, ByteBuffer target, int first, int last) {
+			this.table = table;
+			this.source = source;
+			this.target = target;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if (last - first == 1) {
+				int start = first * CHUNK_SIZE;
+				int length = Math.min(CHUNK_SIZE, source.limit() - start);
+				byte[] chunk = new byte[length];
+				ByteBuffer in = source.duplicate();
+				in.position(start);
+				in.get(chunk);
+				for (int i = 0; i < length; i++) {
+					chunk[i] = table[chunk[i] & 0xFF];
+				}
+				ByteBuffer out = target.duplicate();
+				out.position(start);
+				out.put(chunk);
+			} else {
+				int middle = (first + last) >>> 1;
+				invokeAll(new TranslateChunks(table, source, target, first, middle),
+						new TranslateChunks(table, source, target, middle, last));
+			}
+		}
+
+		private byte[] table; //translates each byte value
+		private ByteBuffer source; //the mapped region to read
+		private ByteBuffer target; //the mapped region to write, maybe the same one
+		private int first; //the first chunk to translate
+		private int last; //one past the last chunk to translate
+	}
+
+	/* Private constants */
+
+	/* The size of each region of the file mapped into memory at once */
+	private static final long MAP_SIZE = 1L << 30;
+
+	/* The bytes in each chunk, a whole number of pages so chunks start on page boundaries */
+	private static final int CHUNK_SIZE = 1 << 20;
+
+}
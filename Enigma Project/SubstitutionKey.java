@@ -0,0 +1,306 @@
+/*
+ * File: SubstitutionKey.java
+ * --------------------------
+ * This file is a class for the 26-letter keys used by
+ * LetterSubstitutionCipher and InvertKey. A key shows how each letter in
+ * the alphabet is translated: the first letter of the key is what 'A'
+ * becomes, the second is what 'B' becomes, and so on. A key is checked
+ * in a single pass by setting one bit of a 26-bit mask for each letter,
+ * and the problems found are returned as a Check instead of being
+ * printed, so callers can decide what to tell the user. Once a key is
+ * made it never changes, and its forward and inverse tables are worked
+ * out right away, so encrypting, decrypting and inverting are all table
+ * lookups.
+ */
+
+import java.util.*;
+
+public class SubstitutionKey {
+
+	/**
+	 * Creates a key from a 26-letter string, in either case.
+	 *
+	 * @param key The key, with each letter of the alphabet exactly once
+	 * @throws IllegalArgumentException If the key is illegal
+	 */
+
+	public SubstitutionKey(String key) {
+		Check check = check(key);
+		if (!check.isLegal()) {
+			throw new IllegalArgumentException("illegal key " + key + ": " + check);
+		}
+		forward = new byte[26];
+		inverse = new byte[26];
+		for (int i = 0; i < 26; i++) {
+			int letter = (key.charAt(i) | 0x20) - 'a';
+			forward[i] = (byte) letter;
+			inverse[letter] = (byte) i;
+		}
+	}
+
+	/**
+	 * Tells whether a string is a legal key: 26 characters, using each
+	 * letter of the alphabet exactly once in either case.  This allocates
+	 * nothing, so it can be used to screen large numbers of keys.
+	 *
+	 * @param key The string to check
+	 * @return True if the key is legal
+	 */
+
+	public static boolean isLegal(CharSequence key) {
+		if (key.length() != 26) return false;
+		int seen = 0;
+		for (int i = 0; i < 26; i++) {
+			int letter = (key.charAt(i) | 0x20) - 'a';
+			if (letter < 0 || letter >= 26) return false;
+			seen |= 1 << letter;
+		}
+		return seen == ALL_LETTERS;
+	}
+
+	/**
+	 * Checks a key and reports everything that is wrong with it.  Only the
+	 * ASCII letters count as letters, the same as in the constructor and
+	 * isLegal(), so a character such as a dotless i is reported as not a
+	 * letter even though it uppercases to one.
+	 *
+	 * @param key The string to check
+	 * @return The result of the check
+	 */
+
+	public static Check check(String key) {
+		int seen = 0;
+		StringBuilder duplicates = new StringBuilder();
+		StringBuilder illegal = new StringBuilder();
+		for (int i = 0; i < key.length(); i++) {
+			char ch = key.charAt(i);
+			int letter = (ch | 0x20) - 'a';
+			if (letter < 0 || letter >= 26) {
+				illegal.append(ch);
+			} else if ((seen & (1 << letter)) != 0) {
+				duplicates.append((char)('A' + letter));
+			} else seen |= 1 << letter;
+		}
+		return new Check(key.length(), duplicates.toString(), illegal.toString(), ALL_LETTERS & ~seen);
+	}
+
+	/**
+	 * Encrypts a string with this key.  Letters are translated and come
+	 * out in uppercase, and anything else is copied to the output in
+	 * uppercase.
+	 *
+	 * @param str The string to be encrypted
+	 * @return The encrypted string
+	 */
+
+	public String encrypt(String str) {
+		return translate(str, forward);
+	}
+
+	/**
+	 * Decrypts a string that was encrypted with this key.
+	 *
+	 * @param str The string to be decrypted
+	 * @return The decrypted string
+	 */
+
+	public String decrypt(String str) {
+		return translate(str, inverse);
+	}
+
+	/**
+	 * Returns the key that translates in the opposite direction.  For
+	 * example, the inverse of "LZDRXPEAJYBQWFVIHCTGNOMKSU" is
+	 * "HKRCGNTQPIXAWUVFLDYSZOMEJB".
+	 *
+	 * @return The inverted key
+	 */
+
+	public SubstitutionKey invert() {
+		return new SubstitutionKey(inverse, forward);
+	}
+
+	/**
+	 * Returns what a letter becomes under this key.
+	 *
+	 * @param letter The letter to translate, in either case
+	 * @return The translated letter, in uppercase
+	 */
+
+	public char translate(char letter) {
+		int index = (letter | 0x20) - 'a';
+		if (index < 0 || index >= 26) {
+			throw new IllegalArgumentException("not a letter: " + letter);
+		}
+		return (char)('A' + forward[index]);
+	}
+
+	/**
+	 * Returns the key as a 26-letter uppercase string.
+	 *
+	 * @return The key
+	 */
+
+	public String toString() {
+		char[] key = new char[26];
+		for (int i = 0; i < 26; i++) {
+			key[i] = (char)('A' + forward[i]);
+		}
+		return new String(key);
+	}
+
+	public boolean equals(Object obj) {
+		return obj instanceof SubstitutionKey && Arrays.equals(forward, ((SubstitutionKey) obj).forward);
+	}
+
+	public int hashCode() {
+		return Arrays.hashCode(forward);
+	}
+
+	/**
+	 * The result of checking a key: whether it is the right length, the
+	 * letters it uses more than once, any characters that aren't letters,
+	 * and the letters it leaves out.
+	 */
+
+	public static class Check {
+
+		public Check(int length, String duplicates, String illegal, int missingMask) {
+			this.length = length;
+			this.duplicates = duplicates;
+			this.illegal = illegal;
+			this.missingMask = missingMask;
+		}
+
+		public boolean isLegal() {
+			return length == 26 && missingMask == 0;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		/* Each repeated use of a letter, in the order found */
+		public String getDuplicates() {
+			return duplicates;
+		}
+
+		/* Each character that isn't a letter, in the order found */
+		public String getIllegalCharacters() {
+			return illegal;
+		}
+
+		/* The letters the key leaves out, in alphabetical order */
+		public String getMissing() {
+			StringBuilder missing = new StringBuilder();
+			for (int i = 0; i < 26; i++) {
+				if ((missingMask & (1 << i)) != 0) missing.append((char)('A' + i));
+			}
+			return missing.toString();
+		}
+
+		public int getMissingMask() {
+			return missingMask;
+		}
+
+		/**
+		 * Returns one line for each problem, in the form the console
+		 * programs show them to the user.
+		 *
+		 * @return The problems found, or an empty list for a legal key
+		 */
+
+		public List<String> getMessages() {
+			List<String> messages = new ArrayList<String>();
+			if (length != 26) {
+				messages.add("key has " + length + " characters, not 26");
+			}
+			for (int i = 0; i < duplicates.length(); i++) {
+				messages.add("duplicate letter " + duplicates.charAt(i));
+			}
+			for (int i = 0; i < illegal.length(); i++) {
+				messages.add("not a letter: " + illegal.charAt(i));
+			}
+			if (missingMask != 0) {
+				String missing = getMissing();
+				StringBuilder list = new StringBuilder("[");
+				for (int i = 0; i < missing.length(); i++) {
+					if (i > 0) list.append(", ");
+					list.append(missing.charAt(i));
+				}
+				messages.add("missing letter(s): " + list.append("]"));
+			}
+			return messages;
+		}
+
+		public String toString() {
+			return String.join("; ", getMessages());
+		}
+
+		private int length; //the number of characters in the key
+		private String duplicates; //letters used again after their first use
+		private String illegal; //characters that aren't letters
+		private int missingMask; //a bit for each letter left out, bit 0 for A
+	}
+
+	/* Package-private methods */
+
+	/*Method: byteTable()*/
+	/*
+	 * returns a 256-entry table for translating ASCII bytes with this key
+	 * or its inverse. Letters in either case become the translated
+	 * uppercase letter and every other byte is left as it is, so a byte
+	 * is translated with one lookup and no tests
+	 */
+	byte[] byteTable(boolean decrypt) {
+		byte[] letters = decrypt ? inverse : forward;
+		byte[] table = new byte[256];
+		for (int i = 0; i < 256; i++) {
+			table[i] = (byte) i;
+		}
+		for (int i = 0; i < 26; i++) {
+			table['A' + i] = (byte)('A' + letters[i]);
+			table['a' + i] = (byte)('A' + letters[i]);
+		}
+		return table;
+	}
+
+	/* Private methods */
+
+	/*Constructor*/
+	/*
+	 * makes a key straight from tables that are already known to be
+	 * inverses of each other
+	 */
+	private SubstitutionKey(byte[] forward, byte[] inverse) {
+		this.forward = forward;
+		this.inverse = inverse;
+	}
+
+	/*Method: translate()*/
+	/*
+	 * runs each letter of a string through a table, converting everything
+	 * to uppercase
+	 */
+	private static String translate(String str, byte[] table) {
+		char[] result = str.toCharArray();
+		for (int i = 0; i < result.length; i++) {
+			char ch = result[i];
+			int letter = (ch | 0x20) - 'a';
+			if (letter >= 0 && letter < 26) {
+				result[i] = (char)('A' + table[letter]);
+			} else result[i] = Character.toUpperCase(ch);
+		}
+		return new String(result);
+	}
+
+	/* Tables, shared by keys made from each other */
+	final byte[] forward; //what each letter becomes, 0 for A through 25 for Z
+	final byte[] inverse; //which letter becomes each letter
+
+	/* Private constants */
+
+	/* The mask with a bit set for each of the 26 letters */
+	private static final int ALL_LETTERS = (1 << 26) - 1;
+
+}
@@ -0,0 +1,427 @@
+/*
+ * File: SubstitutionSolver.java
+ * -----------------------------
+ * This file is a program that finds the key used by
+ * LetterSubstitutionCipher from the ciphertext alone. It scores a guess
+ * at the plaintext by adding up the log probabilities of every group of
+ * four letters in it, taken from a table of English quadgram counts, and
+ * climbs toward better guesses by swapping two letters of the key at a
+ * time. A swap only changes the quadgrams that include one of the two
+ * ciphertext letters involved, so the ciphertext positions of every
+ * letter are worked out once and a swap is scored from just those
+ * quadgrams. Climbs that start from different random keys run at the same
+ * time on every core, and the search stops as soon as a few of them have
+ * finished on the same best key.
+ *
+ * The quadgram file has one quadgram and its count per line, such as
+ * "TION 13168375", as in the widely used English quadgram lists.
+ *
+ * Usage: java SubstitutionSolver quadgrams ciphertext
+ */
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class SubstitutionSolver {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: java SubstitutionSolver quadgrams ciphertext");
+			System.exit(2);
+		}
+		SubstitutionSolver solver = new SubstitutionSolver(loadQuadgrams(Paths.get(args[0])));
+		String ciphertext = new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.ISO_8859_1);
+		long start = System.nanoTime();
+		Result result = solver.solve(ciphertext);
+		System.out.println("key:   " + result.getKey());
+		System.out.printf("score: %.2f%n", result.getScore());
+		System.out.println(result.getKey().decrypt(ciphertext));
+		System.err.printf("%d restarts in %.3f s%n", result.getRestarts(), (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Creates a solver that scores text with a quadgram table.
+	 *
+	 * @param quadgrams The log probability of each quadgram, indexed by the
+	 *        four letters as a base-26 number, as from loadQuadgrams()
+	 */
+
+	public SubstitutionSolver(float[] quadgrams) {
+		if (quadgrams.length != QUADGRAMS) {
+			throw new IllegalArgumentException("quadgram table must have 26^4 entries");
+		}
+		this.quadgrams = quadgrams;
+	}
+
+	/**
+	 * Reads a file of quadgram counts and turns them into a table of log
+	 * probabilities.  Quadgrams that never appear in the file get a score
+	 * a little below the rarest one that does.
+	 *
+	 * @param file The file of quadgrams and counts
+	 * @return The table of log probabilities
+	 * @throws IOException If the file can't be read or is badly formed
+	 */
+
+	public static float[] loadQuadgrams(Path file) throws IOException {
+		long[] counts = new long[QUADGRAMS];
+		long total = 0;
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0) continue;
+				String[] parts = line.split("\\s+");
+				if (parts.length != 2 || parts[0].length() != 4) {
+					throw new IOException("bad quadgram line: " + line);
+				}
+				int index = 0;
+				for (int i = 0; i < 4; i++) {
+					int letter = Character.toUpperCase(parts[0].charAt(i)) - 'A';
+					if (letter < 0 || letter >= 26) throw new IOException("bad quadgram line: " + line);
+					index = index * 26 + letter;
+				}
+				long count = Long.parseLong(parts[1]);
+				counts[index] += count;
+				total += count;
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("bad quadgram count: " + e.getMessage());
+		}
+		if (total == 0) throw new IOException("no quadgrams in " + file);
+		float[] table = new float[QUADGRAMS];
+		float floor = (float) Math.log10(0.01 / total);
+		for (int i = 0; i < QUADGRAMS; i++) {
+			table[i] = counts[i] > 0 ? (float) Math.log10((double) counts[i] / total) : floor;
+		}
+		return table;
+	}
+
+	/**
+	 * Finds the most likely key for a ciphertext.  Anything that isn't a
+	 * letter is ignored.  Random restarts run in parallel until
+	 * AGREEMENT of them end on the same best key, or MAX_RESTARTS have
+	 * been tried.
+	 *
+	 * @param ciphertext The ciphertext
+	 * @return The best key found and its score
+	 */
+
+	public Result solve(String ciphertext) {
+		int[] letters = lettersOf(ciphertext);
+		if (letters.length < 4) {
+			throw new IllegalArgumentException("ciphertext needs at least four letters");
+		}
+		Search search = new Search(letters);
+		int workers = Runtime.getRuntime().availableProcessors();
+		List<Callable<Void>> climbers = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < workers; i++) {
+			climbers.add(new Climber(search));
+		}
+		ForkJoinPool.commonPool().invokeAll(climbers);
+		return search.getResult();
+	}
+
+	/**
+	 * The key found by solve(), with its score and the number of random
+	 * restarts it took.
+	 */
+
+	public static class Result {
+
+		public Result(SubstitutionKey key, double score, int restarts) {
+			this.key = key;
+			this.score = score;
+			this.restarts = restarts;
+		}
+
+		/* The encryption key, as LetterSubstitutionCipher would take it */
+		public SubstitutionKey getKey() {
+			return key;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public int getRestarts() {
+			return restarts;
+		}
+
+		public String toString() {
+			return key + " " + score;
+		}
+
+		private SubstitutionKey key; //the encryption key
+		private double score; //the quadgram score of the decryption
+		private int restarts; //the number of climbs run
+	}
+
+	/* Private methods */
+
+	/*Method: lettersOf()*/
+	/*
+	 * returns the letters of a string as numbers from 0 to 25, dropping
+	 * everything else
+	 */
+	private static int[] lettersOf(String text) {
+		int[] letters = new int[text.length()];
+		int count = 0;
+		for (int i = 0; i < text.length(); i++) {
+			int letter = (text.charAt(i) | 0x20) - 'a';
+			if (letter >= 0 && letter < 26) letters[count++] = letter;
+		}
+		return Arrays.copyOf(letters, count);
+	}
+
+	/*
+	 * Holds what all the climbers for one ciphertext share: the letters,
+	 * the quadgrams each ciphertext letter appears in, and the best key
+	 * found so far with how many climbs have ended on it.
+	 */
+	private class Search {
+
+		public Search(int[] letters) {
+			this.letters = letters;
+			int quadgramCount = letters.length - 3;
+			int[] sizes = new int[26];
+			int[] last = new int[26];
+			Arrays.fill(last, -1);
+			for (int q = 0; q < quadgramCount; q++) {
+				for (int i = 0; i < 4; i++) {
+					int letter = letters[q + i];
+					if (last[letter] != q) {
+						last[letter] = q;
+						sizes[letter]++;
+					}
+				}
+			}
+			positions = new int[26][];
+			for (int letter = 0; letter < 26; letter++) {
+				positions[letter] = new int[sizes[letter]];
+			}
+			Arrays.fill(last, -1);
+			Arrays.fill(sizes, 0);
+			for (int q = 0; q < quadgramCount; q++) {
+				for (int i = 0; i < 4; i++) {
+					int letter = letters[q + i];
+					if (last[letter] != q) {
+						last[letter] = q;
+						positions[letter][sizes[letter]++] = q;
+					}
+				}
+			}
+		}
+
+		/*
+		 * records a finished climb and returns false once enough climbs
+		 * agree on the best key, or the search has run long enough. The
+		 * climbers sort the letters the ciphertext never uses, so climbs
+		 * that found the same decryption report the same key
+		 */
+		public synchronized boolean report(byte[] key, double score) {
+			restarts++;
+			if (bestKey != null && Arrays.equals(key, bestKey)) {
+				agreement++;
+			} else if (score > bestScore) {
+				bestKey = key.clone();
+				bestScore = score;
+				agreement = 1;
+			}
+			if (agreement >= AGREEMENT || restarts >= MAX_RESTARTS) done = true;
+			return !done;
+		}
+
+		public synchronized boolean isDone() {
+			return done;
+		}
+
+		/*
+		 * turns the best decryption key into the encryption key, which
+		 * is its inverse
+		 */
+		public synchronized Result getResult() {
+			char[] key = new char[26];
+			for (int i = 0; i < 26; i++) {
+				key[i] = (char)('A' + bestKey[i]);
+			}
+			return new Result(new SubstitutionKey(new String(key)).invert(), bestScore, restarts);
+		}
+
+		private int[] letters; //the ciphertext letters
+		private int[][] positions; //for each ciphertext letter, the quadgrams it is in
+		private byte[] bestKey; //the best decryption key so far
+		private double bestScore = Double.NEGATIVE_INFINITY; //the score of the best key
+		private int agreement; //the climbs that ended on the best key
+		private int restarts; //the climbs finished so far
+		private boolean done; //whether the search should stop
+	}
+
+	/*
+	 * Runs climbs from random keys one after another until the search is
+	 * done. Each climber keeps its own copy of the key, the plaintext
+	 * letters and the score of every quadgram, so climbers never wait on
+	 * each other except to report.
+	 */
+	private class Climber implements Callable<Void> {
+
+		public Climber(Search search) {
+			this.search = search;
+			letters = search.letters;
+			positions = search.positions;
+			quadgramScores = new float[letters.length - 3];
+			stamps = new int[letters.length - 3];
+		}
+
+		public Void call() {
+			Random random = ThreadLocalRandom.current();
+			do {
+				if (search.isDone()) break;
+				randomKey(random);
+				climb();
+				sortUnusedLetters();
+			} while (search.report(key, score));
+			return null;
+		}
+
+		/*Method: randomKey()*/
+		/*
+		 * starts a climb from a random decryption key and scores every
+		 * quadgram of the resulting plaintext
+		 */
+		private void randomKey(Random random) {
+			for (int i = 0; i < 26; i++) {
+				key[i] = (byte) i;
+			}
+			for (int i = 25; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				byte temp = key[i];
+				key[i] = key[j];
+				key[j] = temp;
+			}
+			score = 0;
+			for (int q = 0; q < quadgramScores.length; q++) {
+				quadgramScores[q] = scoreQuadgram(q);
+				score += quadgramScores[q];
+			}
+		}
+
+		/*Method: climb()*/
+		/*
+		 * tries every swap of two key letters and keeps any that raises
+		 * the score, until a whole pass finds nothing better
+		 */
+		private void climb() {
+			boolean improved = true;
+			while (improved) {
+				improved = false;
+				for (int a = 0; a < 25; a++) {
+					for (int b = a + 1; b < 26; b++) {
+						if (trySwap(a, b)) improved = true;
+					}
+				}
+			}
+		}
+
+		/*Method: sortUnusedLetters()*/
+		/*
+		 * puts the plaintext letters given to ciphertext letters that never
+		 * appear back in alphabetical order. Those entries are in no
+		 * quadgram, so the climb never settles them and they would
+		 * otherwise stay random, making climbs that found the same
+		 * decryption look like different keys to the search
+		 */
+		private void sortUnusedLetters() {
+			byte[] unused = new byte[26];
+			int count = 0;
+			for (int letter = 0; letter < 26; letter++) {
+				if (positions[letter].length == 0) unused[count++] = key[letter];
+			}
+			Arrays.sort(unused, 0, count);
+			count = 0;
+			for (int letter = 0; letter < 26; letter++) {
+				if (positions[letter].length == 0) key[letter] = unused[count++];
+			}
+		}
+
+		/*Method: trySwap()*/
+		/*
+		 * swaps what ciphertext letters a and b decrypt to and rescores
+		 * only the quadgrams that contain a or b. A quadgram that contains
+		 * both is on both lists, so it is stamped the first time and
+		 * skipped the second. The swap is undone if it doesn't help
+		 */
+		private boolean trySwap(int a, int b) {
+			swap(a, b);
+			epoch++;
+			double delta = 0;
+			for (int q : positions[a]) {
+				stamps[q] = epoch;
+				delta += scoreQuadgram(q) - quadgramScores[q];
+			}
+			for (int q : positions[b]) {
+				if (stamps[q] != epoch) delta += scoreQuadgram(q) - quadgramScores[q];
+			}
+			if (delta <= 0) {
+				swap(a, b);
+				return false;
+			}
+			for (int q : positions[a]) {
+				quadgramScores[q] = scoreQuadgram(q);
+			}
+			for (int q : positions[b]) {
+				quadgramScores[q] = scoreQuadgram(q);
+			}
+			score += delta;
+			return true;
+		}
+
+		/*Method: swap()*/
+		/*
+		 * swaps two letters of the decryption key
+		 */
+		private void swap(int a, int b) {
+			byte temp = key[a];
+			key[a] = key[b];
+			key[b] = temp;
+		}
+
+		/*Method: scoreQuadgram()*/
+		/*
+		 * returns the log probability of the plaintext quadgram starting at
+		 * a position, under the current key
+		 */
+		private float scoreQuadgram(int q) {
+			int index = key[letters[q]] * 26 * 26 * 26 + key[letters[q + 1]] * 26 * 26
+					+ key[letters[q + 2]] * 26 + key[letters[q + 3]];
+			return quadgrams[index];
+		}
+
+		private Search search; //the search this climber reports to
+		private int[] letters; //the ciphertext letters
+		private int[][] positions; //for each ciphertext letter, the quadgrams it is in
+		private byte[] key = new byte[26]; //the decryption key being climbed
+		private double score; //the score of the current key
+		private float[] quadgramScores; //the score of each quadgram under the current key
+		private int[] stamps; //marks quadgrams already rescored for this swap
+		private int epoch; //the stamp for the current swap
+	}
+
+	/* Private instance variables */
+	private float[] quadgrams; //the log probability of each quadgram
+
+	/* Private constants */
+
+	/* The number of different quadgrams */
+	private static final int QUADGRAMS = 26 * 26 * 26 * 26;
+
+	/* The number of climbs that must end on the same key to stop early */
+	private static final int AGREEMENT = 3;
+
+	/* The most climbs tried before giving up and taking the best so far */
+	private static final int MAX_RESTARTS = 2000;
+
+}
@@ -0,0 +1,55 @@
+/*
+ * File: SubstitutionKeyTest.java
+ * ------------------------------
+ * This file is a regression check for SubstitutionKey. Characters outside
+ * ASCII that uppercase to a letter, like the dotless i and the long s,
+ * used to pass check() and then crash the constructor with an array
+ * index error instead of being reported as illegal. It prints "ok" if
+ * every check passes and stops with an error at the first that fails.
+ *
+ * Usage, from the Enigma Project directory:
+ *   javac -d out SubstitutionKey.java test/SubstitutionKeyTest.java
+ *   java -cp out SubstitutionKeyTest
+ */
+
+public class SubstitutionKeyTest {
+
+	public static void main(String[] args) {
+		checkIllegal("ABCDEFGH\u0131JKLMNOPQRSTUVWXYZ", '\u0131', "I");
+		checkIllegal("ABCDEFGHIJKLMNOPQR\u017fTUVWXYZ", '\u017f', "S");
+		checkIllegal("abcdefgh\u0131jklmnopqrstuvwxyz", '\u0131', "I");
+		SubstitutionKey key = new SubstitutionKey("qwertyuiopasdfghjklzxcvbnm");
+		expect(key.toString().equals("QWERTYUIOPASDFGHJKLZXCVBNM"), "lowercase key is accepted");
+		System.out.println("ok");
+	}
+
+	/* Private methods */
+
+	/*Method: checkIllegal()*/
+	/*
+	 * makes sure a 26-character key with one non-ASCII character in it is
+	 * turned down the same way by check(), isLegal() and the constructor
+	 */
+	private static void checkIllegal(String key, char character, String missing) {
+		SubstitutionKey.Check check = SubstitutionKey.check(key);
+		expect(!check.isLegal(), "check() rejects " + key);
+		expect(check.getIllegalCharacters().equals(String.valueOf(character)), "check() reports " + key);
+		expect(check.getMissing().equals(missing), "check() finds " + missing + " missing in " + key);
+		expect(!SubstitutionKey.isLegal(key), "isLegal() rejects " + key);
+		try {
+			new SubstitutionKey(key);
+			throw new AssertionError("constructor accepted " + key);
+		} catch (IllegalArgumentException e) {
+			/* expected: the key is illegal */
+		}
+	}
+
+	/*Method: expect()*/
+	/*
+	 * stops with an error naming the check if a condition is false
+	 */
+	private static void expect(boolean condition, String description) {
+		if (!condition) throw new AssertionError("failed: " + description);
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * File: EnigmaVectorKernel.java
+ * -----------------------------
+ * This file is a version of EnigmaMultiKeyKernel that uses the Vector API
+ * to decrypt one ciphertext letter under a whole vector of settings with
+ * a single load from the lane table. Each load is compared against every
+ * letter of the alphabet, and the matches are added into one byte
+ * counter per lane, so counting is done for all the lanes at once too.
+ * Four letters are counted on each pass over the message, which keeps
+ * their counters in registers and loads each entry a quarter as often.
+ * The counters are bytes, so the message is taken at most 255 letters at
+ * a time and the counts are added into the ints of EnigmaMultiKeyKernel
+ * in between.
+ *
+ * The Vector API is still an incubator module, so this file is kept out
+ * of the main directory, which builds without it. Nothing else refers to
+ * this class by name: EnigmaMultiKeyKernel.create() loads it if it is on
+ * the class path and the module is present, and uses the plain-Java
+ * kernel otherwise. It pays off on long or repeated searches in one JVM;
+ * a single search from a cold start is slower, since the JIT takes most
+ * of it to compile this class.
+ *
+ * Usage, from the Enigma Project directory, after compiling the rest of
+ * the project into out:
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/EnigmaVectorKernel.java
+ *   java --add-modules jdk.incubator.vector -cp out EnigmaKeySearch ciphertext
+ */
+
+import java.util.*;
+import jdk.incubator.vector.*;
+
+public class EnigmaVectorKernel extends EnigmaMultiKeyKernel {
+
+	/**
+	 * Creates a Vector API kernel that scores the given number of settings
+	 * at once.
+	 *
+	 * @param lanes The number of settings scored together, from 1 to 64
+	 */
+
+	public EnigmaVectorKernel(int lanes) {
+		super(lanes);
+		partial = new byte[SPECIES.length()];
+	}
+
+	/**
+	 * Scores the letters in the same way as EnigmaMultiKeyKernel, a
+	 * vector of lanes at a time.
+	 *
+	 * @param laneTable The lane table for a rotor order, from laneTable()
+	 * @param letters The letters of the ciphertext
+	 * @param firstPosition The starting rotor position of the first lane
+	 * @param scores Receives the score for each lane
+	 */
+
+	public void score(byte[] laneTable, byte[] letters, int firstPosition, long[] scores) {
+		if (rows.length < letters.length) rows = new int[letters.length];
+		int position = firstPosition;
+		for (int i = 0; i < letters.length; i++) {
+			position++;
+			if (position == EnigmaMachine.PERIOD) position = 0;
+			rows[i] = letters[i] * ROW_SIZE + position;
+		}
+		Arrays.fill(counts, 0);
+		for (int start = 0; start < letters.length; start += SEGMENT_SIZE) {
+			int end = Math.min(letters.length, start + SEGMENT_SIZE);
+			for (int chunk = 0; chunk < lanes; chunk += SPECIES.length()) {
+				countSegment(laneTable, start, end, chunk);
+			}
+		}
+		sumScores(scores);
+	}
+
+	/* Private methods */
+
+	/*Method: countSegment()*/
+	/*
+	 * counts each letter in the decryptions of letters start to end for
+	 * the vector of lanes beginning at chunk. Four letters are counted on
+	 * each pass, so every load is compared four times; a match is -1 in
+	 * the mask's vector, so subtracting it adds one to the counter. The
+	 * loads never run off the end of a row, since every row has MAX_LANES
+	 * entries of padding
+	 */
+	private void countSegment(byte[] laneTable, int start, int end, int chunk) {
+		for (int letter = 0; letter < 26; letter += 4) {
+			ByteVector first = ByteVector.zero(SPECIES);
+			ByteVector second = first;
+			ByteVector third = first;
+			ByteVector fourth = first;
+			for (int i = start; i < end; i++) {
+				ByteVector decrypted = ByteVector.fromArray(SPECIES, laneTable, rows[i] + chunk);
+				first = first.sub(decrypted.eq((byte) letter).toVector());
+				second = second.sub(decrypted.eq((byte)(letter + 1)).toVector());
+				third = third.sub(decrypted.eq((byte)(letter + 2)).toVector());
+				fourth = fourth.sub(decrypted.eq((byte)(letter + 3)).toVector());
+			}
+			addCounts(first, chunk, letter);
+			addCounts(second, chunk, letter + 1);
+			addCounts(third, chunk, letter + 2);
+			addCounts(fourth, chunk, letter + 3);
+		}
+	}
+
+	/*Method: addCounts()*/
+	/*
+	 * adds the byte counters for one letter into the counts of the lanes
+	 * beginning at chunk. The last pass of countSegment() runs past Z, and
+	 * those counters are always zero and are dropped here
+	 */
+	private void addCounts(ByteVector counters, int chunk, int letter) {
+		if (letter >= 26) return;
+		counters.intoArray(partial, 0);
+		int width = Math.min(SPECIES.length(), lanes - chunk);
+		for (int lane = 0; lane < width; lane++) {
+			counts[(chunk + lane) * 26 + letter] += partial[lane] & 0xFF;
+		}
+	}
+
+	/* Private instance variables */
+	private int[] rows = new int[0]; //where each letter's lanes start in the lane table
+	private byte[] partial; //the byte counters of one vector, copied out
+
+	/* Private constants */
+
+	/* The widest vector of bytes this processor handles well */
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+	/* The most letters counted before a byte counter could overflow */
+	private static final int SEGMENT_SIZE = 255;
+
+}